@@ -16,11 +16,18 @@
  *            in the right subtree (SMALLEST RIGHT)
  *        split node n into (n, right_sibling_node) with larger half staying in n
  *        internal node split promotes middle key to parent as the divider key
+ *
+ * Merge Nodes on Underflow (fewer than half = (order - 1) / 2 keys, root excepted)
+ * Rules: first try to borrow a key from the left, then the right sibling
+ *        otherwise merge with a sibling, always merging the right node into the left
+ *        (so the first leaf is never removed) and dropping their divider key
  */
 
 import java.io.*;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.lang.Math.ceil;
 import static java.lang.System.out;
@@ -32,20 +39,25 @@ import static java.lang.System.out;
  * Internal nodes will contain divider keys such that each divider key corresponds to
  * the smallest key in its right subtree (SMALLEST RIGHT).  Keys in left subtree are "<",
  * while keys in right subtree are ">=".
+ * Individual operations are guarded by a read-write lock, so concurrent readers may
+ * proceed together while writers are exclusive.  Iterators (including those of range
+ * views) are weakly consistent: they never fail, but may not reflect concurrent updates.
  */
 public class BpTreeMap <K extends Comparable <K>, V>
        extends AbstractMap <K, V>
-       implements Serializable, Cloneable // , SortedMap <K, V>
+       implements Serializable, Cloneable, SortedMap <K, V>
 {
-    private static final boolean DEBUG = true;                        // debug flag
+    private static final int ORDER = 256;                             // default maximum number of children for a B+Tree node.
 
-    private static final int ORDER = 5;                               // maximum number of children for a B+Tree node.
-    private static final int HALF  = (ORDER - 1) / 2;                 // half of max keys (floor)
-    private static final int HALFP = ORDER - HALF;                    // rest of the keys (half plus)
+    private final int order;                                          // maximum number of children for a node in this B+Tree
+    private final int half;                                           // half of max keys (floor)
+    private final int halfp;                                          // rest of the keys (half plus)
 
     private final Class <K> classK;                                   // The class for type K.
     private final Class <V> classV;                                   // The class for type V.
 
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock ();  // guards the tree structure
+
 //-----------------------------------------------------------------------------------
 // Node inner class
 //-----------------------------------------------------------------------------------
@@ -60,8 +72,9 @@ public class BpTreeMap <K extends Comparable <K>, V>
      * Split:     extra room in nodes allows the overflow key to be inserted before split
      */
     private class Node
+            implements Serializable
     {
-        boolean   isLeaf;                                             // whether the node is a leaf 
+        boolean   isLeaf;                                             // whether the node is a leaf
         int       keys;                                               // number of active keys
         K []      key;                                                // array of keys
         Object [] ref;                                                // array of references/pointers
@@ -76,9 +89,9 @@ public class BpTreeMap <K extends Comparable <K>, V>
         {
             isLeaf = isLeaf_;
             keys   = keys_;
-            key    = (K []) Array.newInstance (classK, ORDER);
-            ref = (isLeaf) ? new Object [ORDER + 1]
-                           : (Node []) Array.newInstance (Node.class, ORDER + 1);
+            key    = (K []) Array.newInstance (classK, order);
+            ref = (isLeaf) ? new Object [order + 1]
+                           : (Node []) Array.newInstance (Node.class, order + 1);
         } // constructor
 
         /****************************************************************************
@@ -97,26 +110,50 @@ public class BpTreeMap <K extends Comparable <K>, V>
         /****************************************************************************
          * Return whether this node has overflowed (too many keys).
          */
-        boolean overflow () { return keys >= ORDER; }
+        boolean overflow () { return keys >= order; }
+
+        /****************************************************************************
+         * Return whether this node has underflowed (too few keys).
+         */
+        boolean underflow () { return keys < half; }
 
         /****************************************************************************
          * Find and return the first position where 'k < key_i' in this node.
+         * Uses binary search, since nodes may hold hundreds of keys.
          * @param k  the key whose position is sought
          */
         int find (K k)
         {
-            for (var i = 0; i < keys; i++) if (k.compareTo (key[i]) < 0) return i;
-            return keys;
+            int lo = 0, hi = keys;
+            while (lo < hi) {
+                var mid = (lo + hi) >>> 1;
+                if (k.compareTo (key[mid]) < 0) hi = mid; else lo = mid + 1;
+            } // while
+            return lo;
         } // find
 
+        /****************************************************************************
+         * Find and return the first position where 'k <= key_i' in this node.
+         * @param k  the key whose position is sought
+         */
+        int findGe (K k)
+        {
+            int lo = 0, hi = keys;
+            while (lo < hi) {
+                var mid = (lo + hi) >>> 1;
+                if (key[mid].compareTo (k) < 0) lo = mid + 1; else hi = mid;
+            } // while
+            return lo;
+        } // findGe
+
         /****************************************************************************
          * Find and return the first position where 'k == key_i' in this node.
          * @param k  the key whose position is sought
          */
         int findEq (K k)
         {
-            for (var i = 0; i < keys; i++) if (k.compareTo (key[i]) == 0) return i;
-            return -1;
+            var i = findGe (k);
+            return (i < keys && k.compareTo (key[i]) == 0) ? i : -1;
         } // find
 
         /****************************************************************************
@@ -136,6 +173,21 @@ public class BpTreeMap <K extends Comparable <K>, V>
             keys     += 1;                                              // increment to number of active keys
         } // add
 
+        /****************************************************************************
+         * Remove the key at position p along with the reference to its right.
+         * @param p  the position of the key to remove
+         */
+        void remove (int p)
+        {
+            for (var i = p; i < keys - 1; i++) {                        // close the gap by shifting keys left
+                key[i]   = key[i+1];
+                ref[i+1] = ref[i+2];
+            } // for
+            keys       -= 1;
+            key[keys]   = null;                                         // let the GC reclaim the removed entry
+            ref[keys+1] = null;
+        } // remove
+
         /****************************************************************************
          * Split this LEAF node by creating a right sibling node (rt) and moving
          * half the keys and references to that new node, leaving halfp.
@@ -143,32 +195,35 @@ public class BpTreeMap <K extends Comparable <K>, V>
          */
         Node split ()
         {
-            var rt = new Node (HALF, true);                             // allocate leaf right sibling node (rt)
-            for (var i = 0; i < HALF; i++) {                            // move largest half of keys (with refs) to rt
-                rt.key[i]   = key[HALFP + i];
-                rt.ref[i+1] = ref[HALFP + i + 1];                       // refs are right of keys
+            var rt = new Node (half, true);                             // allocate leaf right sibling node (rt)
+            for (var i = 0; i < half; i++) {                            // move largest half of keys (with refs) to rt
+                rt.key[i]   = key[halfp + i];
+                rt.ref[i+1] = ref[halfp + i + 1];                       // refs are right of keys
+                key[halfp + i]     = null;
+                ref[halfp + i + 1] = null;
             } // for
             rt.ref[0] = ref[0];                                         // update LINKED LIST of nodes
             ref[0]    = rt;                                             // this -> rt -> old-right
-            keys      = HALFP;                                          // reset number of active keys to help plus
+            keys      = halfp;                                          // reset number of active keys to help plus
             return rt;                                                  // (divider key (smallest right) in right sibling
         } // split
 
         /****************************************************************************
          * Split this INTERNAL node by creating a right sibling rt and moving half
          * the keys and references to that new node, leaving halfp - 1.
-         * Return the divider key and the right sibling node.
+         * Return the right sibling node.  The divider key (middle key) to promote
+         * is left just past the active keys of this node, i.e., in key[keys].
          */
         Node splitI ()
         {
-            var rt = new Node (HALF, false);                            // allocate internal right sibling node (rt)
-            for (var i = 0; i < HALF; i++) {                            // move largest half of keys (with refs) to rt
-                rt.key[i] = key[HALFP + i];
-                rt.ref[i] = ref[HALFP + i];
+            var rt = new Node (half, false);                            // allocate internal right sibling node (rt)
+            for (var i = 0; i < half; i++) {                            // move largest half of keys (with refs) to rt
+                rt.key[i] = key[halfp + i];
+                rt.ref[i] = ref[halfp + i];
             } // for
-            rt.ref[HALF] = ref[keys];                                   // copy over the last ref
-            keys = HALFP - 1;                                           // reset number of active keys to help plus - 1
-            return rt;                                                  // divider key (middle key) in right sibling
+            rt.ref[half] = ref[keys];                                   // copy over the last ref
+            keys = halfp - 1;                                           // reset number of active keys to help plus - 1
+            return rt;                                                  // divider key (middle key) in key[keys]
         } // splitI
 
         /****************************************************************************
@@ -211,18 +266,33 @@ public class BpTreeMap <K extends Comparable <K>, V>
     private Node root;                                                // root of the B+Tree
     private final Node firstLeaf;                                     // first (leftmost) leaf in the B+Tree
 
-    private int count  = 0;                                           // counter for number nodes accessed (for performance testing)
+    private final LongAdder count = new LongAdder ();                 // counter for number nodes accessed (for performance testing)
     private int kCount = 0;                                           // counter for total number of keys in the B+Tree Map
 
     /********************************************************************************
-     * Construct an empty B+Tree map.
+     * Construct an empty B+Tree map using the default order.
      * @param _classK  the class for keys (K)
      * @param _classV  the class for values (V)
      */
     public BpTreeMap (Class <K> _classK, Class <V> _classV)
     {
+        this (_classK, _classV, ORDER);
+    } // constructor
+
+    /********************************************************************************
+     * Construct an empty B+Tree map whose nodes hold up to _order children.
+     * @param _classK  the class for keys (K)
+     * @param _classV  the class for values (V)
+     * @param _order   the maximum number of children per node (fan-out), at least 4
+     */
+    public BpTreeMap (Class <K> _classK, Class <V> _classV, int _order)
+    {
+        if (_order < 4) throw new IllegalArgumentException (STR."BpTreeMap: order \{_order} < 4");
         classK    = _classK;
         classV    = _classV;
+        order     = _order;
+        half      = (order - 1) / 2;
+        halfp     = order - half;
         root      = new Node (0, true);                                // make an empty root
         firstLeaf = root;
     } // constructor
@@ -230,11 +300,11 @@ public class BpTreeMap <K extends Comparable <K>, V>
     /********************************************************************************
      * Return null to use the natural order based on the key type.  This requires the
      * key type to implement Comparable.
-    public Comparator <? super K> comparator () 
+     */
+    public Comparator <? super K> comparator ()
     {
         return null;
     } // comparator
-     */
 
     /********************************************************************************
      * Return the size (number of keys) in the B+Tree.
@@ -242,21 +312,33 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     public int size () { return kCount; }
 
+    /********************************************************************************
+     * Return the order (maximum number of children per node) of the B+Tree.
+     * @return  the order of the B+Tree
+     */
+    public int order () { return order; }
+
+    /********************************************************************************
+     * Return the number of nodes accessed so far by look ups (for performance testing).
+     * @return  the node access count
+     */
+    public long accessCount () { return count.sum (); }
+
 //-----------------------------------------------------------------------------------
 // Retrieve values or ranges (subtrees)
 //-----------------------------------------------------------------------------------
 
     /********************************************************************************
      * Return a set containing all the entries as pairs of keys and values.
+     * The entries are delivered in key order by walking the linked leaves.
      * @return  the set view of the map
      */
     public Set <Map.Entry <K, V>> entrySet ()
     {
-        var enSet = new HashSet <Map.Entry <K, V>> ();
-
-        //  T O   B E   I M P L E M E N T E D
-            
-        return enSet;
+        return new AbstractSet <Map.Entry <K, V>> () {
+            public Iterator <Map.Entry <K, V>> iterator () { return new LeafIterator (null, null); }
+            public int size () { return kCount; }
+        }; // AbstractSet
     } // entrySet
 
     /********************************************************************************
@@ -267,6 +349,21 @@ public class BpTreeMap <K extends Comparable <K>, V>
     @SuppressWarnings("unchecked")
     public V get (Object key) { return find ((K) key); }
 
+    /********************************************************************************
+     * Return whether the B+Tree map contains the given key.
+     * @param key  the key to check
+     */
+    @SuppressWarnings("unchecked")
+    public boolean containsKey (Object key)
+    {
+        lock.readLock ().lock ();
+        try {
+            return findp ((K) key, root).pos >= 0;
+        } finally {
+            lock.readLock ().unlock ();
+        } // try
+    } // containsKey
+
     record NodePos (Object node, int pos) {}                          // as records are implicitly static, can't use 'Node node'
 
     /********************************************************************************
@@ -274,11 +371,17 @@ public class BpTreeMap <K extends Comparable <K>, V>
      * Calls the recursive findp method.
      * @param key  the key to find
      */
+    @SuppressWarnings("unchecked")
     public V find (K key)
     {
-        var np = findp (key, root);                                   // leaf node, index position
-        return (np.pos >= 0) ? (V) ((Node) np.node).ref[np.pos+1]
-                             : (V) null;
+        lock.readLock ().lock ();
+        try {
+            var np = findp (key, root);                               // leaf node, index position
+            return (np.pos >= 0) ? (V) ((Node) np.node).ref[np.pos+1]
+                                 : (V) null;
+        } finally {
+            lock.readLock ().unlock ();
+        } // try
     } // find
 
     /********************************************************************************
@@ -286,13 +389,76 @@ public class BpTreeMap <K extends Comparable <K>, V>
      * @param key  the key to find
      * @param n    the current node
      */
+    @SuppressWarnings("unchecked")
     private NodePos findp (K key, Node n)
     {
-        count += 1;
+        count.increment ();
         return (n.isLeaf) ? new NodePos (n, n.findEq (key))
                           : findp (key, (Node) n.ref[n.find (key)]);
     } // findp
 
+    /********************************************************************************
+     * Return the first (smallest) key in the B+Tree map.
+     * @return  the first key
+     */
+    public K firstKey ()
+    {
+        lock.readLock ().lock ();
+        try {
+            if (kCount == 0) throw new NoSuchElementException ();
+            var n = firstLeaf;
+            while (n.keys == 0) n = (Node) n.ref[0];
+            return n.key[0];
+        } finally {
+            lock.readLock ().unlock ();
+        } // try
+    } // firstKey
+
+    /********************************************************************************
+     * Return the last (largest) key in the B+Tree map.
+     * @return  the last key
+     */
+    @SuppressWarnings("unchecked")
+    public K lastKey ()
+    {
+        lock.readLock ().lock ();
+        try {
+            if (kCount == 0) throw new NoSuchElementException ();
+            var n = root;
+            while (! n.isLeaf) n = (Node) n.ref[n.keys];
+            return n.key[n.keys - 1];
+        } finally {
+            lock.readLock ().unlock ();
+        } // try
+    } // lastKey
+
+    /********************************************************************************
+     * Return the portion of the B+Tree map whose keys are in [fromKey, toKey).
+     * The view is backed by this map and is scanned by walking the linked leaves.
+     * @param fromKey  the low end key (inclusive)
+     * @param toKey    the high end key (exclusive)
+     * @return  the submap view
+     */
+    public SortedMap <K, V> subMap (K fromKey, K toKey)
+    {
+        if (fromKey.compareTo (toKey) > 0) throw new IllegalArgumentException ("subMap: fromKey > toKey");
+        return new Range (fromKey, toKey);
+    } // subMap
+
+    /********************************************************************************
+     * Return the portion of the B+Tree map whose keys are less than toKey.
+     * @param toKey  the high end key (exclusive)
+     * @return  the submap view
+     */
+    public SortedMap <K, V> headMap (K toKey) { return new Range (null, Objects.requireNonNull (toKey)); }
+
+    /********************************************************************************
+     * Return the portion of the B+Tree map whose keys are greater than or equal to fromKey.
+     * @param fromKey  the low end key (inclusive)
+     * @return  the submap view
+     */
+    public SortedMap <K, V> tailMap (K fromKey) { return new Range (Objects.requireNonNull (fromKey), null); }
+
 //-----------------------------------------------------------------------------------
 // Put key-value pairs into the B+Tree
 //-----------------------------------------------------------------------------------
@@ -301,13 +467,26 @@ public class BpTreeMap <K extends Comparable <K>, V>
      * Put the key-value pair in the B+Tree map.
      * @param key    the key to insert
      * @param value  the value to insert
-     * @return  null, not the previous value for this key
+     * @return  the previous value for this key, null if none
      */
+    @SuppressWarnings("unchecked")
     public V put (K key, V value)
     {
-        kCount += 1;
-        insert (key, value, root);
-        return null;
+        lock.writeLock ().lock ();
+        try {
+            var np = findp (key, root);
+            if (np.pos >= 0) {                                        // key present => replace its value
+                var leaf = (Node) np.node;
+                var oldV = (V) leaf.ref[np.pos+1];
+                leaf.ref[np.pos+1] = value;
+                return oldV;
+            } // if
+            kCount += 1;
+            insert (key, value, root);
+            return null;
+        } finally {
+            lock.writeLock ().unlock ();
+        } // try
     } // put
 
     /********************************************************************************
@@ -318,14 +497,12 @@ public class BpTreeMap <K extends Comparable <K>, V>
      * @param key  the key to insert
      * @param ref  the value/node to insert
      * @param n    the current node
-     * @return  the newly allocated right sibling node of n 
+     * @return  the newly allocated right sibling node of n
      */
     @SuppressWarnings("unchecked")
     private Node insert (K key, V ref, Node n)
     {
-        out.println ("=============================================================");
-        out.println (STR."insert: key \{key}");
-        out.println ("=============================================================");
+        Trace.log (Trace.Level.TRACE, () -> STR."BpTreeMap.insert: key \{key}");
 
         Node rt = null;                                               // holder right sibling node
 
@@ -337,14 +514,22 @@ public class BpTreeMap <K extends Comparable <K>, V>
             } // if
 
         } else {                                                      // handle INTERNAL node level
-            rt = insert (key, ref, (Node) n.ref[n.find (key)]);       // recursive call to insert
-            if (DEBUG) out.println ("insert: handle internal node level");
-
-                //  T O   B E   I M P L E M E N T E D
+            var child = (Node) n.ref[n.find (key)];
+            var crt   = insert (key, ref, child);                     // recursive call to insert
+            Trace.log (Trace.Level.TRACE, () -> "BpTreeMap.insert: handle internal node level");
 
+            if (crt != null) {                                        // child split => add divider to n
+                var dkey = crt.isLeaf ? crt.key[0]                    // leaf: smallest key in right sibling
+                                      : child.key[child.keys];        // internal: promoted middle key
+                rt = addI (n, dkey, crt);
+                if (rt != null) {
+                    if (n != root) return rt;
+                    root = new Node (root, n.key[n.keys], rt);        // make a new root
+                } // if
+            } // if
         } // if
 
-        if (DEBUG) printT (root, 0);
+        if (Trace.on (Trace.Level.TRACE)) printT (root, 0);
         return rt;                                                    // return right sibling node
     } // insert
 
@@ -365,20 +550,435 @@ public class BpTreeMap <K extends Comparable <K>, V>
 
     /********************************************************************************
      * Add new key k and value v into INTERNAL node n.  Upon overflow, split node n,
-     * in which case the new right sibling node (containing the divider key) is returned.
+     * in which case the new right sibling node is returned (with the divider key
+     * left in n.key[n.keys]).
      * @param n  the current node
      * @param k  the new key
-     * @param v  the new left value (ref a node)
+     * @param v  the new right value (ref a node)
      */
     private Node addI (Node n, K k, Node v)
     {
         Node rt = null;                                               // holder for right sibling rt
-
-                //  T O   B E   I M P L E M E N T E D
-
+        n.add (k, v);                                                 // add into node n (v right of k)
+        if (n.overflow ()) rt = n.splitI ();                          // full => split into n and rt
         return rt;
     } // addI
-    
+
+    /********************************************************************************
+     * Bulk load the B+Tree from entries given in strictly ascending key order.  The
+     * tree is built bottom-up in a single linear pass: leaves are filled to capacity
+     * and linked as they are produced, and then each internal level is built over the
+     * level below it.  Falls back to individual puts if the tree is not empty.
+     * @param entries  the iterator over the sorted key-value pairs
+     */
+    @SuppressWarnings("unchecked")
+    public void bulkLoad (Iterator <? extends Map.Entry <K, V>> entries)
+    {
+        lock.writeLock ().lock ();
+        try {
+            if (kCount > 0) {
+                while (entries.hasNext ()) { var e = entries.next (); put (e.getKey (), e.getValue ()); }
+                return;
+            } // if
+
+            var level = new ArrayList <Node> ();                     // nodes on the level being built
+            var leaf  = firstLeaf;
+            level.add (leaf);
+            K prev = null;
+            while (entries.hasNext ()) {
+                var e = entries.next ();
+                var k = e.getKey ();
+                if (prev != null && prev.compareTo (k) >= 0) {
+                    throw new IllegalArgumentException (STR."bulkLoad: key \{k} not in ascending order");
+                } // if
+                if (leaf.keys == order - 1) {                         // leaf full => link in a new one
+                    var nl = new Node (0, true);
+                    leaf.ref[0] = nl;
+                    leaf = nl;
+                    level.add (leaf);
+                } // if
+                leaf.key[leaf.keys]   = k;
+                leaf.ref[leaf.keys+1] = e.getValue ();
+                leaf.keys  += 1;
+                kCount     += 1;
+                prev        = k;
+            } // while
+
+            if (level.size () > 1) {                                  // top up an underfull last leaf
+                var last = level.get (level.size () - 1);
+                var prv  = level.get (level.size () - 2);
+                while (last.underflow ()) {
+                    shiftRight (last, prv.key[prv.keys-1], prv.ref[prv.keys]);
+                    prv.remove (prv.keys - 1);
+                } // while
+            } // if
+
+            var minKey = new ArrayList <K> ();                        // smallest key under each node
+            for (var n : level) minKey.add (n.key[0]);
+
+            while (level.size () > 1) {                               // build the next level up
+                var parents = (level.size () + order - 1) / order;
+                var upper   = new ArrayList <Node> (parents);
+                var upMin   = new ArrayList <K> (parents);
+                var j       = 0;
+                for (var p = 0; p < parents; p++) {                   // spread children evenly over parents
+                    var kids = (level.size () - j) / (parents - p);
+                    var n    = new Node (kids - 1, false);
+                    n.ref[0] = level.get (j);
+                    for (var c = 1; c < kids; c++) {
+                        n.key[c-1] = minKey.get (j + c);
+                        n.ref[c]   = level.get (j + c);
+                    } // for
+                    upper.add (n);
+                    upMin.add (minKey.get (j));
+                    j += kids;
+                } // for
+                level  = upper;
+                minKey = upMin;
+            } // while
+            root = level.get (0);
+        } finally {
+            lock.writeLock ().unlock ();
+        } // try
+    } // bulkLoad
+
+//-----------------------------------------------------------------------------------
+// Remove key-value pairs from the B+Tree
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Remove the given key (and its value) from the B+Tree map.
+     * @param key  the key to remove
+     * @return  the value that was removed, null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove (Object key)
+    {
+        lock.writeLock ().lock ();
+        try {
+            var oldV = delete ((K) key, root);
+            if (! root.isLeaf && root.keys == 0) root = (Node) root.ref[0];   // shrink the tree
+            return oldV;
+        } finally {
+            lock.writeLock ().unlock ();
+        } // try
+    } // remove
+
+    /********************************************************************************
+     * Remove all the entries from the B+Tree map.
+     */
+    public void clear ()
+    {
+        lock.writeLock ().lock ();
+        try {
+            Arrays.fill (firstLeaf.key, null);
+            Arrays.fill (firstLeaf.ref, null);
+            firstLeaf.keys = 0;
+            root   = firstLeaf;
+            kCount = 0;
+        } finally {
+            lock.writeLock ().unlock ();
+        } // try
+    } // clear
+
+    /********************************************************************************
+     * Recursive helper function for deleting a key from the subtree rooted at n.
+     * A child left underflowing by the deletion is fixed up by its parent.
+     * @param key  the key to delete
+     * @param n    the current node
+     * @return  the value that was removed, null if not found
+     */
+    @SuppressWarnings("unchecked")
+    private V delete (K key, Node n)
+    {
+        if (n.isLeaf) {
+            var p = n.findEq (key);
+            if (p < 0) return null;
+            var oldV = (V) n.ref[p+1];
+            n.remove (p);
+            kCount -= 1;
+            return oldV;
+        } // if
+
+        var i    = n.find (key);
+        var c    = (Node) n.ref[i];
+        var oldV = delete (key, c);
+        if (oldV != null && c.underflow ()) rebalance (n, i);
+        return oldV;
+    } // delete
+
+    /********************************************************************************
+     * Fix the underflowing i-th child of INTERNAL node n by borrowing a key from
+     * a sibling that has one to spare, or else by merging it with a sibling.
+     * @param n  the parent node
+     * @param i  the position of the underflowing child
+     */
+    @SuppressWarnings("unchecked")
+    private void rebalance (Node n, int i)
+    {
+        var c  = (Node) n.ref[i];
+        var lt = (i > 0) ? (Node) n.ref[i-1] : null;
+        var rt = (i < n.keys) ? (Node) n.ref[i+1] : null;
+
+        if (lt != null && lt.keys > half) {                           // borrow from left sibling
+            if (c.isLeaf) {
+                shiftRight (c, lt.key[lt.keys-1], lt.ref[lt.keys]);
+                lt.remove (lt.keys - 1);
+                n.key[i-1] = c.key[0];
+            } else {
+                for (var j = c.keys; j > 0; j--) { c.key[j] = c.key[j-1]; c.ref[j+1] = c.ref[j]; }
+                c.ref[1]   = c.ref[0];
+                c.key[0]   = n.key[i-1];
+                c.ref[0]   = lt.ref[lt.keys];
+                c.keys    += 1;
+                n.key[i-1] = lt.key[lt.keys-1];
+                lt.key[lt.keys-1] = null; lt.ref[lt.keys] = null;
+                lt.keys   -= 1;
+            } // if
+
+        } else if (rt != null && rt.keys > half) {                    // borrow from right sibling
+            if (c.isLeaf) {
+                c.key[c.keys]   = rt.key[0];
+                c.ref[c.keys+1] = rt.ref[1];
+                c.keys += 1;
+                rt.remove (0);
+                n.key[i] = rt.key[0];
+            } else {
+                c.key[c.keys]   = n.key[i];
+                c.ref[c.keys+1] = rt.ref[0];
+                c.keys  += 1;
+                n.key[i] = rt.key[0];
+                rt.ref[0] = rt.ref[1];
+                rt.remove (0);
+            } // if
+
+        } else if (lt != null) {                                      // merge c into left sibling
+            merge (n, i - 1, lt, c);
+        } else {                                                      // merge right sibling into c
+            merge (n, i, c, rt);
+        } // if
+    } // rebalance
+
+    /********************************************************************************
+     * Merge node rt into its left sibling lt, where n.key[j] is their divider key,
+     * and remove the divider key (and the reference to rt) from parent n.
+     * @param n   the parent node
+     * @param j   the position of the divider key in n
+     * @param lt  the left node (absorbs rt)
+     * @param rt  the right node (discarded)
+     */
+    private void merge (Node n, int j, Node lt, Node rt)
+    {
+        if (lt.isLeaf) {
+            for (var k = 0; k < rt.keys; k++) {
+                lt.key[lt.keys + k]   = rt.key[k];
+                lt.ref[lt.keys + k+1] = rt.ref[k+1];
+            } // for
+            lt.keys  += rt.keys;
+            lt.ref[0] = rt.ref[0];                                    // unlink rt from the LINKED LIST
+        } else {
+            lt.key[lt.keys] = n.key[j];                               // pull the divider key down
+            for (var k = 0; k < rt.keys; k++) lt.key[lt.keys + 1 + k] = rt.key[k];
+            for (var k = 0; k <= rt.keys; k++) lt.ref[lt.keys + 1 + k] = rt.ref[k];
+            lt.keys += rt.keys + 1;
+        } // if
+        n.remove (j);
+    } // merge
+
+    /********************************************************************************
+     * Insert key k with value v at the front of LEAF node n.
+     * @param n  the leaf node
+     * @param k  the new (smallest) key
+     * @param v  the new value
+     */
+    private void shiftRight (Node n, K k, Object v)
+    {
+        for (var j = n.keys; j > 0; j--) { n.key[j] = n.key[j-1]; n.ref[j+1] = n.ref[j]; }
+        n.key[0] = k;
+        n.ref[1] = v;
+        n.keys  += 1;
+    } // shiftRight
+
+//-----------------------------------------------------------------------------------
+// Range scans over the linked leaves
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Return the leaf position of the first key that is >= lo (null => first key).
+     * @param lo  the low end key (inclusive), may be null
+     */
+    @SuppressWarnings("unchecked")
+    private NodePos lowerBound (K lo)
+    {
+        if (lo == null) return new NodePos (firstLeaf, 0);
+        var n = root;
+        while (! n.isLeaf) {
+            count.increment ();
+            n = (Node) n.ref[n.find (lo)];
+        } // while
+        return new NodePos (n, n.findGe (lo));
+    } // lowerBound
+
+    /********************************************************************************
+     * The `LeafIterator` inner class iterates over the entries with keys in [lo, hi)
+     * by walking the linked leaves, starting at the leaf holding lo.
+     */
+    private class LeafIterator
+            implements Iterator <Map.Entry <K, V>>
+    {
+        private final K hi;                                           // high end key (exclusive), null => none
+        private Node    n;                                            // current leaf
+        private int     p;                                            // current position in the leaf
+        private K       last;                                         // last key returned (for remove)
+
+        LeafIterator (K lo, K hi_)
+        {
+            hi = hi_;
+            lock.readLock ().lock ();
+            try {
+                var np = lowerBound (lo);
+                n = (Node) np.node;
+                p = np.pos;
+            } finally {
+                lock.readLock ().unlock ();
+            } // try
+        } // constructor
+
+        /** Skip past exhausted leaves and check the high end of the range.
+         */
+        @SuppressWarnings("unchecked")
+        public boolean hasNext ()
+        {
+            lock.readLock ().lock ();
+            try {
+                while (n != null && p >= n.keys) { n = (Node) n.ref[0]; p = 0; }
+                return n != null && (hi == null || n.key[p].compareTo (hi) < 0);
+            } finally {
+                lock.readLock ().unlock ();
+            } // try
+        } // hasNext
+
+        @SuppressWarnings("unchecked")
+        public Map.Entry <K, V> next ()
+        {
+            if (! hasNext ()) throw new NoSuchElementException ();
+            lock.readLock ().lock ();
+            try {
+                last = n.key[p];
+                var e = new AbstractMap.SimpleImmutableEntry <> (last, (V) n.ref[p+1]);
+                p += 1;
+                return e;
+            } finally {
+                lock.readLock ().unlock ();
+            } // try
+        } // next
+
+        public void remove ()
+        {
+            if (last == null) throw new IllegalStateException ();
+            BpTreeMap.this.remove (last);
+            lock.readLock ().lock ();
+            try {
+                var np = lowerBound (last);                           // re-position after a possible merge
+                n = (Node) np.node;
+                p = np.pos;
+            } finally {
+                lock.readLock ().unlock ();
+            } // try
+            last = null;
+        } // remove
+
+    } // LeafIterator
+
+    /********************************************************************************
+     * The `Range` inner class is a sorted map view of the keys in [lo, hi) that is
+     * backed by this B+Tree map (a null bound means unbounded).
+     */
+    private class Range
+            extends AbstractMap <K, V>
+            implements SortedMap <K, V>
+    {
+        private final K lo;                                           // low end key (inclusive)
+        private final K hi;                                           // high end key (exclusive)
+
+        Range (K lo_, K hi_) { lo = lo_; hi = hi_; }
+
+        /** Return whether key k falls inside this range.
+         */
+        boolean inRange (K k)
+        {
+            return (lo == null || k.compareTo (lo) >= 0) && (hi == null || k.compareTo (hi) < 0);
+        } // inRange
+
+        /** Return the view of [from, to) inside this range (null bounds => this range's).
+         */
+        private Range within (K from, K to)
+        {
+            for (var k : Arrays.asList (from, to)) {
+                if (k != null && ((lo != null && k.compareTo (lo) < 0) || (hi != null && k.compareTo (hi) > 0))) {
+                    throw new IllegalArgumentException (STR."key \{k} out of range");
+                } // if
+            } // for
+            return new Range (from == null ? lo : from, to == null ? hi : to);
+        } // within
+
+        public Comparator <? super K> comparator () { return null; }
+
+        public Set <Map.Entry <K, V>> entrySet ()
+        {
+            return new AbstractSet <Map.Entry <K, V>> () {
+                public Iterator <Map.Entry <K, V>> iterator () { return new LeafIterator (lo, hi); }
+                public int size ()
+                {
+                    var s = 0;
+                    for (var it = iterator (); it.hasNext (); it.next ()) s++;
+                    return s;
+                } // size
+            }; // AbstractSet
+        } // entrySet
+
+        @SuppressWarnings("unchecked")
+        public V get (Object key) { return inRange ((K) key) ? BpTreeMap.this.get (key) : null; }
+
+        @SuppressWarnings("unchecked")
+        public boolean containsKey (Object key) { return inRange ((K) key) && BpTreeMap.this.containsKey (key); }
+
+        public V put (K key, V value)
+        {
+            if (! inRange (key)) throw new IllegalArgumentException ("key out of range");
+            return BpTreeMap.this.put (key, value);
+        } // put
+
+        @SuppressWarnings("unchecked")
+        public V remove (Object key) { return inRange ((K) key) ? BpTreeMap.this.remove (key) : null; }
+
+        public SortedMap <K, V> subMap (K fromKey, K toKey)
+        {
+            if (fromKey.compareTo (toKey) > 0) throw new IllegalArgumentException ("subMap: fromKey > toKey");
+            return within (fromKey, toKey);
+        } // subMap
+
+        public SortedMap <K, V> headMap (K toKey) { return within (null, Objects.requireNonNull (toKey)); }
+
+        public SortedMap <K, V> tailMap (K fromKey) { return within (Objects.requireNonNull (fromKey), null); }
+
+        public K firstKey ()
+        {
+            var it = new LeafIterator (lo, hi);
+            if (! it.hasNext ()) throw new NoSuchElementException ();
+            return it.next ().getKey ();
+        } // firstKey
+
+        public K lastKey ()
+        {
+            K k = null;
+            for (var it = new LeafIterator (lo, hi); it.hasNext (); ) k = it.next ().getKey ();
+            if (k == null) throw new NoSuchElementException ();
+            return k;
+        } // lastKey
+
+    } // Range
+
 //-----------------------------------------------------------------------------------
 // Print/show the B+Tree
 //-----------------------------------------------------------------------------------
@@ -419,11 +1019,11 @@ public class BpTreeMap <K extends Comparable <K>, V>
      */
     public static void main (String [] args)
     {
-        var totalKeys = 30;                    
+        var totalKeys = 30;
         var RANDOMLY  = false;
-        var bpt       = new BpTreeMap <Integer, Integer> (Integer.class, Integer.class);
+        var bpt       = new BpTreeMap <Integer, Integer> (Integer.class, Integer.class, 5);
         if (args.length == 1) totalKeys = Integer.valueOf (args[0]);
-   
+
         if (RANDOMLY) {
             Random rng = new Random ();
             for (var i = 1; i <= totalKeys; i += 2) bpt.put (rng.nextInt (2 * totalKeys), i * i);
@@ -438,8 +1038,20 @@ public class BpTreeMap <K extends Comparable <K>, V>
         out.println ("-------------------------------------------");
         out.println (STR."number of keys in BpTree = \{bpt.kCount}");
         out.println ("-------------------------------------------");
-        out.println ("Average number of nodes accessed = " + bpt.count / (double) totalKeys);
+        out.println ("Average number of nodes accessed = " + bpt.count.sum () / (double) totalKeys);
+
+        out.println ("-------------------------------------------");
+        out.println (STR."range [5, 15) = \{bpt.subMap (5, 15)}");
+        for (var i = 1; i <= totalKeys; i += 4) bpt.remove (i);
+        bpt.printT (bpt.root, 0);
+        out.println (STR."after removes = \{bpt}");
+
+        var bulk = new BpTreeMap <Integer, Integer> (Integer.class, Integer.class, 5);
+        var src  = new TreeMap <Integer, Integer> ();
+        for (var i = 1; i <= totalKeys; i++) src.put (i, i * i);
+        bulk.bulkLoad (src.entrySet ().iterator ());
+        out.println ("bulk loaded:");
+        bulk.printT (bulk.root, 0);
     } // main
 
 } // BpTreeMap
-
@@ -0,0 +1,270 @@
+
+/*****************************************************************************************
+ * @file  BufferPool.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+import static java.lang.System.out;
+import static java.nio.file.StandardOpenOption.*;
+
+/*****************************************************************************************
+ * The BufferPool class caches fixed-size pages of a file in a fixed number of in-memory
+ * frames.  A page must be pinned while in use and unpinned (marking it dirty if it was
+ * modified) afterwards.  When a frame is needed, the CLOCK algorithm picks an unpinned
+ * victim, giving recently used pages a second chance, and writes it back if dirty.
+ */
+public class BufferPool
+       implements Closeable
+{
+    /** The channel for the file holding the pages
+     */
+    private final FileChannel channel;
+
+    /** The number of bytes per page
+     */
+    private final int pageSize;
+
+    /** The frames holding cached pages
+     */
+    private final ByteBuffer [] frame;
+
+    /** The page held in each frame (-1 => free)
+     */
+    private final int [] pageOf;
+
+    /** The pin count for each frame
+     */
+    private final int [] pins;
+
+    /** Whether each frame has been modified since it was read
+     */
+    private final boolean [] dirty;
+
+    /** The CLOCK reference bit for each frame
+     */
+    private final boolean [] used;
+
+    /** The page table mapping page numbers to frames
+     */
+    private final HashMap <Integer, Integer> frameOf;
+
+    /** The position of the CLOCK hand
+     */
+    private int hand = 0;
+
+    /** The number of pages in the file
+     */
+    private int nPages;
+
+    /** Counters for page hits, page misses and page writes (for performance testing)
+     */
+    private long hits = 0, misses = 0, writes = 0;
+
+    /*************************************************************************************
+     * Construct a buffer pool for the pages of the given file.
+     * @param path       the path of the file
+     * @param _pageSize  the number of bytes per page
+     * @param frames     the number of frames (pages that may be cached)
+     * @param create     whether to start with a new (empty) file
+     */
+    public BufferPool (String path, int _pageSize, int frames, boolean create)
+    {
+        pageSize = _pageSize;
+        frame    = new ByteBuffer [frames];
+        pageOf   = new int [frames];
+        pins     = new int [frames];
+        dirty    = new boolean [frames];
+        used     = new boolean [frames];
+        frameOf  = new HashMap <> (2 * frames);
+        Arrays.fill (pageOf, -1);
+        for (var i = 0; i < frames; i++) frame [i] = ByteBuffer.allocate (pageSize);
+
+        try {
+            var file = Path.of (path);
+            if (file.getParent () != null) Files.createDirectories (file.getParent ());
+            channel = create ? FileChannel.open (file, CREATE, READ, WRITE, TRUNCATE_EXISTING)
+                             : FileChannel.open (file, CREATE, READ, WRITE);
+            nPages  = (int) (channel.size () / pageSize);
+        } catch (IOException ex) {
+            out.println (STR."BufferPool: unable to open \{path}");
+            throw new UncheckedIOException (ex);
+        } // try
+    } // constructor
+
+    /*************************************************************************************
+     * Return the number of pages in the file.
+     */
+    public synchronized int pages () { return nPages; }
+
+    /*************************************************************************************
+     * Return the number of page requests satisfied from the pool.
+     */
+    public synchronized long hits () { return hits; }
+
+    /*************************************************************************************
+     * Return the number of page requests that had to read the file.
+     */
+    public synchronized long misses () { return misses; }
+
+    /*************************************************************************************
+     * Return the number of pages written back to the file.
+     */
+    public synchronized long writes () { return writes; }
+
+    /*************************************************************************************
+     * Pin the given page, reading it into a frame if it is not already cached.
+     * @param page  the page number
+     * @return  the buffer holding the page
+     */
+    public synchronized ByteBuffer pin (int page)
+    {
+        if (page < 0 || page >= nPages) throw new IllegalArgumentException (STR."BufferPool.pin: no page \{page}");
+        var f = frameOf.get (page);
+        if (f != null) {
+            hits += 1;
+        } else {
+            misses += 1;
+            f = victim ();
+            read (page, frame [f]);
+            map (page, f);
+        } // if
+        pins [f] += 1;
+        used [f]  = true;
+        return frame [f];
+    } // pin
+
+    /*************************************************************************************
+     * Unpin the given page, recording whether the caller modified it.
+     * @param page      the page number
+     * @param modified  whether the page was modified while pinned
+     */
+    public synchronized void unpin (int page, boolean modified)
+    {
+        var f = frameOf.get (page);
+        if (f == null || pins [f] == 0) throw new IllegalStateException (STR."BufferPool.unpin: page \{page} not pinned");
+        pins [f] -= 1;
+        dirty [f] |= modified;
+    } // unpin
+
+    /*************************************************************************************
+     * Allocate a new zero-filled page at the end of the file (it starts out unpinned).
+     * @return  the page number of the new page
+     */
+    public synchronized int allocate ()
+    {
+        var page = nPages++;
+        var f    = victim ();
+        Arrays.fill (frame [f].array (), (byte) 0);
+        map (page, f);
+        dirty [f] = true;
+        used [f]  = true;
+        return page;
+    } // allocate
+
+    /*************************************************************************************
+     * Write all dirty pages back to the file.
+     */
+    public synchronized void flush ()
+    {
+        for (var f = 0; f < frame.length; f++) {
+            if (pageOf [f] >= 0 && dirty [f]) write (pageOf [f], frame [f]);
+            dirty [f] = false;
+        } // for
+        try {
+            channel.force (false);
+        } catch (IOException ex) {
+            out.println ("BufferPool.flush: IO Exception");
+            throw new UncheckedIOException (ex);
+        } // try
+    } // flush
+
+    /*************************************************************************************
+     * Flush the dirty pages and close the file.
+     */
+    public synchronized void close ()
+    {
+        flush ();
+        try {
+            channel.close ();
+        } catch (IOException ex) {
+            out.println ("BufferPool.close: IO Exception");
+        } // try
+    } // close
+
+    /*************************************************************************************
+     * Pick a frame to hold a new page using the CLOCK algorithm, writing back the page
+     * it currently holds if that page is dirty.
+     * @return  the free frame
+     */
+    private int victim ()
+    {
+        for (var sweep = 0; sweep < 2 * frame.length + 1; sweep++) {
+            var f = hand;
+            hand  = (hand + 1) % frame.length;
+            if (pins [f] > 0) continue;
+            if (used [f]) { used [f] = false; continue; }             // second chance
+            if (pageOf [f] >= 0) {
+                if (dirty [f]) write (pageOf [f], frame [f]);
+                frameOf.remove (pageOf [f]);
+                pageOf [f] = -1;
+                dirty [f]  = false;
+            } // if
+            return f;
+        } // for
+        throw new IllegalStateException ("BufferPool: all frames are pinned");
+    } // victim
+
+    /*************************************************************************************
+     * Record that frame f now holds the given page.
+     */
+    private void map (int page, int f)
+    {
+        pageOf [f] = page;
+        frameOf.put (page, f);
+    } // map
+
+    /*************************************************************************************
+     * Read the given page from the file into buffer buf.
+     */
+    private void read (int page, ByteBuffer buf)
+    {
+        try {
+            buf.clear ();
+            var pos = (long) page * pageSize;
+            while (buf.hasRemaining ()) {
+                var n = channel.read (buf, pos + buf.position ());
+                if (n < 0) { while (buf.hasRemaining ()) buf.put ((byte) 0); }
+            } // while
+            buf.clear ();
+        } catch (IOException ex) {
+            out.println (STR."BufferPool.read: IO Exception on page \{page}");
+            throw new UncheckedIOException (ex);
+        } // try
+    } // read
+
+    /*************************************************************************************
+     * Write buffer buf to the given page of the file.
+     */
+    private void write (int page, ByteBuffer buf)
+    {
+        try {
+            buf.clear ();
+            var pos = (long) page * pageSize;
+            while (buf.hasRemaining ()) channel.write (buf, pos + buf.position ());
+            buf.clear ();
+            writes += 1;
+        } catch (IOException ex) {
+            out.println (STR."BufferPool.write: IO Exception on page \{page}");
+            throw new UncheckedIOException (ex);
+        } // try
+    } // write
+
+} // BufferPool
+
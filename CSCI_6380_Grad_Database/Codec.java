@@ -0,0 +1,42 @@
+
+/*****************************************************************************************
+ * @file  Codec.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/*****************************************************************************************
+ * The Codec interface specifies how values of type T are encoded into (and decoded from)
+ * a fixed number of bytes, so that they may be stored in slots of disk pages or records.
+ * Positions are absolute, so a codec never disturbs the position of the buffer.
+ */
+public interface Codec <T>
+       extends Serializable
+{
+    /*************************************************************************************
+     * Return the number of bytes every encoded value occupies.
+     * @return  the fixed encoded size
+     */
+    int size ();
+
+    /*************************************************************************************
+     * Write (encode) value v into buffer buf starting at byte offset off.
+     * @param buf  the buffer to write into
+     * @param off  the starting byte offset
+     * @param v    the value to encode
+     */
+    void write (ByteBuffer buf, int off, T v);
+
+    /*************************************************************************************
+     * Read (decode) a value from buffer buf starting at byte offset off.
+     * @param buf  the buffer to read from
+     * @param off  the starting byte offset
+     * @return  the decoded value
+     */
+    T read (ByteBuffer buf, int off);
+
+} // Codec
+
@@ -0,0 +1,378 @@
+
+/*****************************************************************************************
+ * @file  ColumnList.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/*****************************************************************************************
+ * The ColumnList class stores the tuples of a table column by column (columnar layout).
+ * Each attribute is held in a primitive array matching its domain:
+ *  integer types: long [], int [], short [], byte []
+ *  real types:    double [], float []
+ *  string types:  char [] for Character, and int [] codes into a dictionary for String
+ * It can stand in for the list of tuples of a table (rows are assembled on demand by
+ * 'get'), while operators may work directly on the columns via 'column', 'value',
+ * 'gather' and 'project'.
+ */
+public class ColumnList
+       extends AbstractList <Comparable []>
+       implements RandomAccess, Serializable
+{
+    /** Type codes for the supported domains
+     */
+    private static final byte LONG = 0, INT = 1, SHORT = 2, BYTE = 3,
+                              DOUBLE = 4, FLOAT = 5, CHAR = 6, STRING = 7;
+
+    /** The attribute domains
+     */
+    private final Class [] domain;
+
+    /** The type code for each attribute
+     */
+    private final byte [] type;
+
+    /** The primitive array holding each attribute (column)
+     */
+    private final Object [] column;
+
+    /** The dictionary for each String attribute (null for other domains)
+     */
+    private final Dict [] dict;
+
+    /** The number of tuples (rows) stored
+     */
+    private int n = 0;
+
+    /** The number of rows the columns can hold before they must grow
+     */
+    private int capacity;
+
+//-----------------------------------------------------------------------------------
+// Dict inner class
+//-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * The Dict inner class maps the distinct strings of a column to int codes and back.
+     */
+    private static class Dict
+            implements Serializable
+    {
+        final ArrayList <String>        values = new ArrayList <> ();      // code -> string
+        final HashMap <String, Integer> codes  = new HashMap <> ();        // string -> code
+
+        /** Return the code for string s, adding it to the dictionary if new.
+         */
+        int encode (String s)
+        {
+            var c = codes.get (s);
+            if (c == null) {
+                c = values.size ();
+                values.add (s);
+                codes.put (s, c);
+            } // if
+            return c;
+        } // encode
+
+    } // Dict
+
+//-----------------------------------------------------------------------------------
+// Constructors
+//-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Construct an empty column list for tuples with the given domains.
+     * @param _domain  the attribute domains
+     */
+    public ColumnList (Class [] _domain)
+    {
+        this (_domain, 16);
+    } // constructor
+
+    /*************************************************************************************
+     * Construct an empty column list with room for the given number of tuples.
+     * @param _domain    the attribute domains
+     * @param _capacity  the initial capacity (number of tuples)
+     */
+    public ColumnList (Class [] _domain, int _capacity)
+    {
+        domain   = _domain;
+        type     = new byte [domain.length];
+        column   = new Object [domain.length];
+        dict     = new Dict [domain.length];
+        capacity = Math.max (_capacity, 1);
+        for (var j = 0; j < domain.length; j++) {
+            type [j]   = typeOf (domain [j]);
+            column [j] = newArray (type [j], capacity);
+            if (type [j] == STRING) dict [j] = new Dict ();
+        } // for
+    } // constructor
+
+    /*************************************************************************************
+     * Construct a column list from existing columns (used by project, gather and zip).
+     */
+    private ColumnList (Class [] _domain, byte [] _type, Object [] _column, Dict [] _dict, int _n)
+    {
+        domain   = _domain;
+        type     = _type;
+        column   = _column;
+        dict     = _dict;
+        n        = _n;
+        capacity = Math.max (_n, 1);
+    } // constructor
+
+    /*************************************************************************************
+     * Return the type code for the given domain.
+     * @param c  the domain (class)
+     */
+    private static byte typeOf (Class c)
+    {
+        return switch (c.getSimpleName ()) {
+        case "Long"      -> LONG;
+        case "Integer"   -> INT;
+        case "Short"     -> SHORT;
+        case "Byte"      -> BYTE;
+        case "Double"    -> DOUBLE;
+        case "Float"     -> FLOAT;
+        case "Character" -> CHAR;
+        case "String"    -> STRING;
+        default          -> throw new IllegalArgumentException (STR."ColumnList: unsupported domain \{c}");
+        }; // switch
+    } // typeOf
+
+    /*************************************************************************************
+     * Make a new primitive array for the given type code.
+     */
+    private static Object newArray (byte t, int len)
+    {
+        return switch (t) {
+        case LONG   -> new long [len];
+        case SHORT  -> new short [len];
+        case BYTE   -> new byte [len];
+        case DOUBLE -> new double [len];
+        case FLOAT  -> new float [len];
+        case CHAR   -> new char [len];
+        default     -> new int [len];                                // Integer and String codes
+        }; // switch
+    } // newArray
+
+    /*************************************************************************************
+     * Copy the first len elements of primitive array a into a new array of length newLen.
+     */
+    private static Object copyOf (byte t, Object a, int newLen)
+    {
+        return switch (t) {
+        case LONG   -> Arrays.copyOf ((long []) a, newLen);
+        case SHORT  -> Arrays.copyOf ((short []) a, newLen);
+        case BYTE   -> Arrays.copyOf ((byte []) a, newLen);
+        case DOUBLE -> Arrays.copyOf ((double []) a, newLen);
+        case FLOAT  -> Arrays.copyOf ((float []) a, newLen);
+        case CHAR   -> Arrays.copyOf ((char []) a, newLen);
+        default     -> Arrays.copyOf ((int []) a, newLen);
+        }; // switch
+    } // copyOf
+
+//-----------------------------------------------------------------------------------
+// List methods
+//-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Return the number of tuples in the list.
+     */
+    public int size () { return n; }
+
+    /*************************************************************************************
+     * Make sure the columns have room for at least the given number of tuples, so that
+     * adding that many tuples does not repeatedly copy the columns.
+     * @param minCapacity  the number of tuples the columns must hold
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        if (minCapacity <= capacity) return;
+        capacity = minCapacity;
+        for (var j = 0; j < column.length; j++) column [j] = copyOf (type [j], column [j], capacity);
+    } // ensureCapacity
+
+    /*************************************************************************************
+     * Return whether value v can be held in column j: only a String column (whose
+     * dictionary encodes null like any other string) can hold null.
+     * @param j  the index of the attribute (column)
+     * @param v  the value
+     */
+    public boolean fits (int j, Comparable v)
+    {
+        return v != null || type [j] == STRING;
+    } // fits
+
+    /*************************************************************************************
+     * Add tuple t to the end of the list, spreading its values over the columns.  Its
+     * values must fit their columns (see fits).
+     * @param t  the tuple to add
+     * @return  true (as specified by Collection.add)
+     */
+    public boolean add (Comparable [] t)
+    {
+        if (n == capacity) {
+            capacity += (capacity >> 1) + 1;
+            for (var j = 0; j < column.length; j++) column [j] = copyOf (type [j], column [j], capacity);
+        } // if
+        for (var j = 0; j < column.length; j++) {
+            var c = column [j];
+            switch (type [j]) {
+            case LONG   -> ((long []) c) [n]   = (Long) t [j];
+            case INT    -> ((int []) c) [n]    = (Integer) t [j];
+            case SHORT  -> ((short []) c) [n]  = (Short) t [j];
+            case BYTE   -> ((byte []) c) [n]   = (Byte) t [j];
+            case DOUBLE -> ((double []) c) [n] = ((Number) t [j]).doubleValue ();
+            case FLOAT  -> ((float []) c) [n]  = ((Number) t [j]).floatValue ();
+            case CHAR   -> ((char []) c) [n]   = (Character) t [j];
+            default     -> ((int []) c) [n]    = dict [j].encode ((String) t [j]);
+            } // switch
+        } // for
+        n += 1;
+        modCount += 1;
+        return true;
+    } // add
+
+    /*************************************************************************************
+     * Return the i-th tuple, assembled from the columns.
+     * @param i  the index of the tuple
+     * @return  the i-th tuple
+     */
+    public Comparable [] get (int i)
+    {
+        Objects.checkIndex (i, n);
+        var t = new Comparable [column.length];
+        for (var j = 0; j < column.length; j++) t [j] = value (i, j);
+        return t;
+    } // get
+
+    /*************************************************************************************
+     * Return the value of attribute j in the i-th tuple.
+     * @param i  the index of the tuple
+     * @param j  the index of the attribute (column)
+     * @return  the value
+     */
+    public Comparable value (int i, int j)
+    {
+        var c = column [j];
+        return switch (type [j]) {
+        case LONG   -> ((long []) c) [i];
+        case INT    -> ((int []) c) [i];
+        case SHORT  -> ((short []) c) [i];
+        case BYTE   -> ((byte []) c) [i];
+        case DOUBLE -> ((double []) c) [i];
+        case FLOAT  -> ((float []) c) [i];
+        case CHAR   -> ((char []) c) [i];
+        default     -> dict [j].values.get (((int []) c) [i]);
+        }; // switch
+    } // value
+
+//-----------------------------------------------------------------------------------
+// Column access
+//-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Return the primitive array holding attribute j (only the first size () entries
+     * are valid).  String columns are returned as their int [] of dictionary codes.
+     * @param j  the index of the attribute (column)
+     */
+    public Object column (int j) { return column [j]; }
+
+    /*************************************************************************************
+     * Return the dictionary code for string s in String column j, or -1 if s does not
+     * occur in the column.
+     * @param j  the index of the String attribute (column)
+     * @param s  the string to look up
+     */
+    public int code (int j, String s)
+    {
+        var c = dict [j].codes.get (s);
+        return (c == null) ? -1 : c;
+    } // code
+
+    /*************************************************************************************
+     * Return the string for the given dictionary code in String column j.
+     * @param j     the index of the String attribute (column)
+     * @param code  the dictionary code
+     */
+    public String decode (int j, int code) { return dict [j].values.get (code); }
+
+    /*************************************************************************************
+     * Return a new column list holding only the given attributes.  Columns are copied
+     * whole (no per-tuple work) and dictionaries are shared.
+     * @param cols  the attribute positions to keep
+     * @return  the projected column list
+     */
+    public ColumnList project (int [] cols)
+    {
+        var dom = new Class [cols.length];
+        var typ = new byte [cols.length];
+        var col = new Object [cols.length];
+        var dic = new Dict [cols.length];
+        for (var k = 0; k < cols.length; k++) {
+            var j = cols [k];
+            dom [k] = domain [j];
+            typ [k] = type [j];
+            col [k] = copyOf (type [j], column [j], Math.max (n, 1));
+            dic [k] = dict [j];
+        } // for
+        return new ColumnList (dom, typ, col, dic, n);
+    } // project
+
+    /*************************************************************************************
+     * Return a new column list holding the tuples at the given positions, in order.
+     * @param rows  the positions of the tuples to keep
+     * @param m     the number of positions used from rows
+     * @return  the gathered column list
+     */
+    public ColumnList gather (int [] rows, int m)
+    {
+        var col = new Object [column.length];
+        for (var j = 0; j < column.length; j++) {
+            var src = column [j];
+            var dst = newArray (type [j], Math.max (m, 1));
+            switch (type [j]) {
+            case LONG   -> { var s = (long []) src;   var d = (long []) dst;   for (var i = 0; i < m; i++) d [i] = s [rows [i]]; }
+            case SHORT  -> { var s = (short []) src;  var d = (short []) dst;  for (var i = 0; i < m; i++) d [i] = s [rows [i]]; }
+            case BYTE   -> { var s = (byte []) src;   var d = (byte []) dst;   for (var i = 0; i < m; i++) d [i] = s [rows [i]]; }
+            case DOUBLE -> { var s = (double []) src; var d = (double []) dst; for (var i = 0; i < m; i++) d [i] = s [rows [i]]; }
+            case FLOAT  -> { var s = (float []) src;  var d = (float []) dst;  for (var i = 0; i < m; i++) d [i] = s [rows [i]]; }
+            case CHAR   -> { var s = (char []) src;   var d = (char []) dst;   for (var i = 0; i < m; i++) d [i] = s [rows [i]]; }
+            default     -> { var s = (int []) src;    var d = (int []) dst;    for (var i = 0; i < m; i++) d [i] = s [rows [i]]; }
+            } // switch
+            col [j] = dst;
+        } // for
+        return new ColumnList (domain, type, col, dict, m);
+    } // gather
+
+    /*************************************************************************************
+     * Return a new column list placing the columns of b to the right of those of a.
+     * Both lists must have the same number of tuples.
+     * @param a  the left column list
+     * @param b  the right column list
+     * @return  the combined column list
+     */
+    public static ColumnList zip (ColumnList a, ColumnList b)
+    {
+        if (a.n != b.n) throw new IllegalArgumentException ("ColumnList.zip: lists differ in size");
+        var dom = new Class [a.domain.length + b.domain.length];
+        var typ = new byte [dom.length];
+        var col = new Object [dom.length];
+        var dic = new Dict [dom.length];
+        System.arraycopy (a.domain, 0, dom, 0, a.domain.length);
+        System.arraycopy (b.domain, 0, dom, a.domain.length, b.domain.length);
+        System.arraycopy (a.type, 0, typ, 0, a.type.length);
+        System.arraycopy (b.type, 0, typ, a.type.length, b.type.length);
+        System.arraycopy (a.column, 0, col, 0, a.column.length);
+        System.arraycopy (b.column, 0, col, a.column.length, b.column.length);
+        System.arraycopy (a.dict, 0, dic, 0, a.dict.length);
+        System.arraycopy (b.dict, 0, dic, a.dict.length, b.dict.length);
+        return new ColumnList (dom, typ, col, dic, a.n);
+    } // zip
+
+} // ColumnList
+
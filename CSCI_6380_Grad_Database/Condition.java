@@ -0,0 +1,519 @@
+
+/****************************************************************************************
+ * @file  Condition.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+import java.util.function.*;
+import java.util.regex.*;
+
+/****************************************************************************************
+ * The Condition class compiles a selection condition given as a string, such as
+ * "year == 1977" or "year >= 1980 && studioName != 'Fox'", into a predicate.  The
+ * condition is parsed once: attribute names are resolved to column positions and
+ * constants are converted to the attribute's domain up front, and each comparison is
+ * specialized for its domain (primitive long or double comparisons for numbers,
+ * 'equals'/'compareTo' for strings), so evaluating a tuple does no parsing or boxing.
+ * For columnar tables the comparisons read the primitive columns directly, and string
+ * equality compares dictionary codes.
+ *
+ * Grammar:  cond := conj ("||" conj)*,  conj := comp ("&&" comp)*,
+ *           comp := attribute op (attribute | constant),  op := == | != | < | <= | > | >=
+ * String constants may be quoted with ' or ".
+ */
+public class Condition
+{
+    /** The comparison operators.
+     */
+    enum Op
+    {
+        EQ, NE, LT, LE, GT, GE;
+
+        /** Return whether a comparison result cmp satisfies this operator.
+         */
+        boolean test (int cmp)
+        {
+            return switch (this) {
+            case EQ -> cmp == 0;
+            case NE -> cmp != 0;
+            case LT -> cmp <  0;
+            case LE -> cmp <= 0;
+            case GT -> cmp >  0;
+            case GE -> cmp >= 0;
+            }; // switch
+        } // test
+
+        /** Return the operator for the given symbol.
+         */
+        static Op of (String s)
+        {
+            return switch (s) {
+            case "==" -> EQ;
+            case "!=" -> NE;
+            case "<"  -> LT;
+            case "<=" -> LE;
+            case ">"  -> GT;
+            case ">=" -> GE;
+            default   -> throw new IllegalArgumentException (STR."Condition: unknown operator \{s}");
+            }; // switch
+        } // of
+
+        /** Return the operator giving the same result with its operands swapped.
+         */
+        Op flip ()
+        {
+            return switch (this) {
+            case LT -> GT;
+            case LE -> GE;
+            case GT -> LT;
+            case GE -> LE;
+            default -> this;
+            }; // switch
+        } // flip
+
+    } // Op
+
+    /** Pattern for the tokens of a condition
+     */
+    private static final Pattern TOKEN = Pattern.compile ("\\s*(==|!=|<=|>=|<|>|&&|\\|\\||'[^']*'|\"[^\"]*\"|[^\\s=!<>&|]+)");
+
+    /** The kinds of comparison, depending on the domain of the attribute
+     */
+    private static final int INTEGRAL = 0, REAL = 1, OTHER = 2;
+
+    /** The tokens of the condition
+     */
+    private final List <String> tokens = new ArrayList <> ();
+
+    /** The position of the next token to parse
+     */
+    private int next = 0;
+
+    /** The attribute names and domains of the table
+     */
+    private final String [] attribute;
+    private final Class [] domain;
+
+    /************************************************************************************
+     * Tokenize the condition for a table with the given attributes and domains.
+     */
+    private Condition (String condition, String [] _attribute, Class [] _domain)
+    {
+        attribute = _attribute;
+        domain    = _domain;
+        var m = TOKEN.matcher (condition);
+        var end = 0;
+        while (m.find () && m.start () == end) { tokens.add (m.group (1)); end = m.end (); }
+        if (! condition.substring (end).isBlank ()) {
+            throw new IllegalArgumentException (STR."Condition: cannot parse \{condition.substring (end)}");
+        } // if
+    } // constructor
+
+    /************************************************************************************
+     * Compile the condition into a predicate on the tuples of a table.
+     *
+     * #usage Condition.compile ("year == 1977", attribute, domain)
+     *
+     * @param condition  the condition as a string
+     * @param attribute  the attribute names of the table
+     * @param domain     the attribute domains of the table
+     * @return  the predicate testing the condition on a tuple
+     */
+    public static Predicate <Comparable []> compile (String condition, String [] attribute, Class [] domain)
+    {
+        var c = new Condition (condition, attribute, domain);
+        var p = c.disjunction (c::rowComparison, Predicate::or, Predicate::and);
+        c.expectEnd ();
+        return p;
+    } // compile
+
+    /************************************************************************************
+     * Compile the condition into a predicate on the row positions of a columnar table.
+     *
+     * @param condition  the condition as a string
+     * @param attribute  the attribute names of the table
+     * @param domain     the attribute domains of the table
+     * @param cl         the columns of the table
+     * @return  the predicate testing the condition on the i-th tuple
+     */
+    public static IntPredicate compile (String condition, String [] attribute, Class [] domain, ColumnList cl)
+    {
+        var c = new Condition (condition, attribute, domain);
+        var p = c.disjunction (() -> c.columnComparison (cl), IntPredicate::or, IntPredicate::and);
+        c.expectEnd ();
+        return p;
+    } // compile
+
+    /************************************************************************************
+     * The bounds a condition places on the key of a table (a null bound is unbounded,
+     * both bounds are inclusive).
+     * @param lo  the lower bound on the key
+     * @param hi  the upper bound on the key
+     */
+    public record KeyRange (KeyType lo, KeyType hi)
+    {
+        /** Return whether the range is a single key.
+         */
+        public boolean isPoint () { return lo != null && hi != null && lo.equals (hi); }
+    } // KeyRange
+
+    /************************************************************************************
+     * Determine the range of keys that the tuples satisfying the condition must have,
+     * so an index can be used to find candidate tuples.  This is possible when the
+     * condition is a conjunction comparing key attributes with constants: equalities
+     * on every key attribute give a single key, and for a single-attribute key the
+     * comparisons <, <=, >, >= give a range.  Other conjuncts are ignored (they still
+     * have to be checked on the candidates).
+     *
+     * @param condition  the condition as a string
+     * @param attribute  the attribute names of the table
+     * @param domain     the attribute domains of the table
+     * @param keyCols    the column positions of the key attributes
+     * @return  the range of keys, or null if the condition does not restrict the key
+     */
+    @SuppressWarnings("unchecked")
+    public static KeyRange keyRange (String condition, String [] attribute, Class [] domain, int [] keyCols)
+    {
+        var comps = new ArrayList <Comp> ();
+        try {
+            var c = new Condition (condition, attribute, domain);
+            comps.add (c.comparison ());
+            while (c.accept ("&&")) comps.add (c.comparison ());
+            if (c.next < c.tokens.size ()) return null;                // not a pure conjunction
+        } catch (IllegalArgumentException ex) {
+            return null;
+        } // try
+
+        var eq = new Comparable [keyCols.length];
+        var n  = 0;
+        for (var cp : comps) {
+            if (cp.k >= 0 || cp.op != Op.EQ) continue;
+            for (var m = 0; m < keyCols.length; m++) {
+                if (keyCols [m] == cp.j && eq [m] == null) { eq [m] = cp.c; n += 1; }
+            } // for
+        } // for
+        if (n == keyCols.length) return new KeyRange (new KeyType (eq), new KeyType (eq));
+        if (keyCols.length != 1) return null;
+
+        Comparable lo = null, hi = null;                                // tightest bounds on the key
+        for (var cp : comps) {
+            if (cp.k >= 0 || cp.j != keyCols [0]) continue;
+            switch (cp.op) {
+            case GT, GE -> { if (lo == null || cp.c.compareTo (lo) > 0) lo = cp.c; }
+            case LT, LE -> { if (hi == null || cp.c.compareTo (hi) < 0) hi = cp.c; }
+            default     -> { }
+            } // switch
+        } // for
+        if (lo == null && hi == null) return null;
+        return new KeyRange ((lo == null) ? null : new KeyType (lo), (hi == null) ? null : new KeyType (hi));
+    } // keyRange
+
+    /************************************************************************************
+     * A comparison of a theta-join: attribute j of the lhs table op attribute k of the
+     * rhs table (each a position in its own table).  Numbers are compared as longs or
+     * doubles, other values using compareTo.
+     * @param j     the attribute position in the lhs table
+     * @param op    the comparison operator
+     * @param k     the attribute position in the rhs table
+     * @param kind  the kind of comparison (INTEGRAL, REAL or OTHER)
+     */
+    public record JoinComp (int j, Op op, int k, int kind)
+    {
+        /** Compare a value of attribute j with a value of attribute k.
+         */
+        @SuppressWarnings("unchecked")
+        public int compare (Comparable a, Comparable b)
+        {
+            return switch (kind) {
+            case INTEGRAL -> Long.compare (((Number) a).longValue (), ((Number) b).longValue ());
+            case REAL     -> Double.compare (((Number) a).doubleValue (), ((Number) b).doubleValue ());
+            default       -> a.compareTo (b);
+            }; // switch
+        } // compare
+
+        /** Return whether tuple t of the lhs table and tuple u of the rhs table satisfy
+         *  the comparison.
+         */
+        public boolean test (Comparable [] t, Comparable [] u)
+        {
+            return op.test (compare (t [j], u [k]));
+        } // test
+    } // JoinComp
+
+    /************************************************************************************
+     * Parse a theta-join condition, a conjunction of comparisons each between an
+     * attribute of the lhs table and one of the rhs table, such as "year < year2" or
+     * "year >= start && year <= end".  As in the joined table, a rhs attribute named
+     * like a lhs attribute is referred to with "2" appended.
+     *
+     * #usage Condition.joinComparisons ("year < year2", attr1, dom1, attr2, dom2)
+     *
+     * @param condition  the condition as a string
+     * @param attr1      the attribute names of the lhs table
+     * @param dom1       the attribute domains of the lhs table
+     * @param attr2      the attribute names of the rhs table
+     * @param dom2       the attribute domains of the rhs table
+     * @return  the comparisons, each with its lhs attribute first
+     */
+    public static List <JoinComp> joinComparisons (String condition, String [] attr1, Class [] dom1,
+                                                   String [] attr2, Class [] dom2)
+    {
+        var n1    = attr1.length;
+        var c     = new Condition (condition, Table.disambiguate (attr1, attr2), Table.concat (dom1, dom2));
+        var comps = new ArrayList <JoinComp> ();
+        do {
+            var cp = c.comparison ();
+            if (cp.k < 0 || (cp.j < n1) == (cp.k < n1)) {
+                throw new IllegalArgumentException ("Condition: a join condition must compare attributes of both tables");
+            } // if
+            var kind = c.kinds (cp.j, cp.k);
+            comps.add ((cp.j < n1) ? new JoinComp (cp.j, cp.op, cp.k - n1, kind)
+                                   : new JoinComp (cp.k, cp.op.flip (), cp.j - n1, kind));
+        } while (c.accept ("&&"));
+        c.expectEnd ();
+        return comps;
+    } // joinComparisons
+
+    //----------------------------------------------------------------------------------
+    // Parsing
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Parse comparisons joined by && and ||, && binding tighter.
+     */
+    private <P> P disjunction (Supplier <P> comparison, BinaryOperator <P> or, BinaryOperator <P> and)
+    {
+        var p = conjunction (comparison, and);
+        while (accept ("||")) p = or.apply (p, conjunction (comparison, and));
+        return p;
+    } // disjunction
+
+    private <P> P conjunction (Supplier <P> comparison, BinaryOperator <P> and)
+    {
+        var p = comparison.get ();
+        while (accept ("&&")) p = and.apply (p, comparison.get ());
+        return p;
+    } // conjunction
+
+    /************************************************************************************
+     * Consume the next token if it is s.
+     */
+    private boolean accept (String s)
+    {
+        if (next < tokens.size () && tokens.get (next).equals (s)) { next += 1; return true; }
+        return false;
+    } // accept
+
+    /************************************************************************************
+     * Return the next token, failing if there are none left.
+     */
+    private String token ()
+    {
+        if (next >= tokens.size ()) throw new IllegalArgumentException ("Condition: unexpected end of condition");
+        return tokens.get (next++);
+    } // token
+
+    private void expectEnd ()
+    {
+        if (next < tokens.size ()) throw new IllegalArgumentException (STR."Condition: unexpected \{tokens.get (next)}");
+    } // expectEnd
+
+    /************************************************************************************
+     * Return the column position of the attribute named s, or -1 if there is none.
+     */
+    private int col (String s)
+    {
+        for (var j = 0; j < attribute.length; j++) if (attribute [j].equals (s)) return j;
+        return -1;
+    } // col
+
+    /************************************************************************************
+     * Return the kind of comparison used for attribute j.
+     */
+    private int kind (int j)
+    {
+        var d = domain [j];
+        if (d == Long.class || d == Integer.class || d == Short.class || d == Byte.class) return INTEGRAL;
+        if (d == Double.class || d == Float.class) return REAL;
+        return OTHER;
+    } // kind
+
+    /************************************************************************************
+     * Return the kind of comparison used between attributes j and k: numbers of
+     * different domains are compared as longs or doubles, others need the same domain.
+     */
+    private int kinds (int j, int k)
+    {
+        var kj = kind (j);
+        var kk = kind (k);
+        if (kj != OTHER && kk != OTHER) return Math.max (kj, kk);
+        if (domain [j] != domain [k]) {
+            throw new IllegalArgumentException (STR."Condition: cannot compare \{attribute [j]} with \{attribute [k]}");
+        } // if
+        return OTHER;
+    } // kinds
+
+    /************************************************************************************
+     * Convert the constant s to the domain of attribute j.
+     */
+    private Comparable constant (String s, int j)
+    {
+        if (s.length () >= 2 && (s.charAt (0) == '\'' || s.charAt (0) == '"')) s = s.substring (1, s.length () - 1);
+        try {
+            return switch (domain [j].getSimpleName ()) {
+            case "Long"      -> Long.valueOf (s);
+            case "Integer"   -> Integer.valueOf (s);
+            case "Short"     -> Short.valueOf (s);
+            case "Byte"      -> Byte.valueOf (s);
+            case "Double"    -> Double.valueOf (s);
+            case "Float"     -> Float.valueOf (s);
+            case "Character" -> { if (s.length () != 1) throw new NumberFormatException (); yield s.charAt (0); }
+            default          -> s;
+            }; // switch
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException (STR."Condition: \{s} is not a \{domain [j].getSimpleName ()}");
+        } // try
+    } // constant
+
+    /************************************************************************************
+     * A parsed comparison: attribute j op (attribute k or constant c).
+     */
+    private record Comp (int j, Op op, int k, Comparable c) {}
+
+    /************************************************************************************
+     * Parse a comparison.
+     */
+    private Comp comparison ()
+    {
+        var lhs = token ();
+        var j   = col (lhs);
+        if (j < 0) throw new IllegalArgumentException (STR."Condition: unknown attribute \{lhs}");
+        var op  = Op.of (token ());
+        var rhs = token ();
+        var k   = col (rhs);
+        return (k >= 0) ? new Comp (j, op, k, null) : new Comp (j, op, -1, constant (rhs, j));
+    } // comparison
+
+    //----------------------------------------------------------------------------------
+    // Specialized comparisons
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Parse a comparison and build the specialized predicate on tuples.
+     */
+    @SuppressWarnings("unchecked")
+    private Predicate <Comparable []> rowComparison ()
+    {
+        var cp = comparison ();
+        int j  = cp.j;
+        var op = cp.op;
+
+        if (cp.k >= 0) {                                                // attribute op attribute
+            int k = cp.k;
+            return switch (kinds (j, k)) {
+            case INTEGRAL -> t -> op.test (Long.compare (((Number) t [j]).longValue (), ((Number) t [k]).longValue ()));
+            case REAL     -> t -> op.test (Double.compare (((Number) t [j]).doubleValue (), ((Number) t [k]).doubleValue ()));
+            default       -> t -> op.test (t [j].compareTo (t [k]));
+            }; // switch
+        } // if
+
+        switch (kind (j)) {
+        case INTEGRAL -> {
+            var c = ((Number) cp.c).longValue ();
+            return switch (op) {
+            case EQ -> t -> ((Number) t [j]).longValue () == c;
+            case NE -> t -> ((Number) t [j]).longValue () != c;
+            case LT -> t -> ((Number) t [j]).longValue () <  c;
+            case LE -> t -> ((Number) t [j]).longValue () <= c;
+            case GT -> t -> ((Number) t [j]).longValue () >  c;
+            case GE -> t -> ((Number) t [j]).longValue () >= c;
+            }; // switch
+        } // case
+        case REAL -> {
+            var c = ((Number) cp.c).doubleValue ();
+            return switch (op) {
+            case EQ -> t -> ((Number) t [j]).doubleValue () == c;
+            case NE -> t -> ((Number) t [j]).doubleValue () != c;
+            case LT -> t -> ((Number) t [j]).doubleValue () <  c;
+            case LE -> t -> ((Number) t [j]).doubleValue () <= c;
+            case GT -> t -> ((Number) t [j]).doubleValue () >  c;
+            case GE -> t -> ((Number) t [j]).doubleValue () >= c;
+            }; // switch
+        } // case
+        default -> {
+            var c = cp.c;
+            return switch (op) {
+            case EQ -> t -> c.equals (t [j]);
+            case NE -> t -> ! c.equals (t [j]);
+            default -> t -> op.test (t [j].compareTo (c));
+            }; // switch
+        } // default
+        } // switch
+    } // rowComparison
+
+    /************************************************************************************
+     * Parse a comparison and build the specialized predicate on the row positions of
+     * columnar table cl, reading its primitive columns directly.
+     */
+    @SuppressWarnings("unchecked")
+    private IntPredicate columnComparison (ColumnList cl)
+    {
+        var cp = comparison ();
+        int j  = cp.j;
+        var op = cp.op;
+
+        if (cp.k >= 0) {                                                // attribute op attribute
+            int k = cp.k;
+            return switch (kinds (j, k)) {
+            case INTEGRAL -> i -> op.test (Long.compare (((Number) cl.value (i, j)).longValue (),
+                                                         ((Number) cl.value (i, k)).longValue ()));
+            case REAL     -> i -> op.test (Double.compare (((Number) cl.value (i, j)).doubleValue (),
+                                                           ((Number) cl.value (i, k)).doubleValue ()));
+            default       -> i -> op.test (cl.value (i, j).compareTo (cl.value (i, k)));
+            }; // switch
+        } // if
+
+        var col = cl.column (j);
+        switch (kind (j)) {
+        case INTEGRAL -> {
+            var c = ((Number) cp.c).longValue ();
+            IntToLongFunction v = switch (col) {
+            case long [] a  -> i -> a [i];
+            case int [] a   -> i -> a [i];
+            case short [] a -> i -> a [i];
+            default         -> i -> ((byte []) col) [i];
+            }; // switch
+            return i -> op.test (Long.compare (v.applyAsLong (i), c));
+        } // case
+        case REAL -> {
+            var c = ((Number) cp.c).doubleValue ();
+            IntToDoubleFunction v = (col instanceof double [] a) ? i -> a [i] : i -> ((float []) col) [i];
+            return switch (op) {
+            case EQ -> i -> v.applyAsDouble (i) == c;
+            case NE -> i -> v.applyAsDouble (i) != c;
+            case LT -> i -> v.applyAsDouble (i) <  c;
+            case LE -> i -> v.applyAsDouble (i) <= c;
+            case GT -> i -> v.applyAsDouble (i) >  c;
+            case GE -> i -> v.applyAsDouble (i) >= c;
+            }; // switch
+        } // case
+        default -> {
+            if (col instanceof char [] a) {
+                var c = (Character) cp.c;
+                return i -> op.test (Character.compare (a [i], c));
+            } // if
+            var codes = (int []) col;                                   // String => dictionary codes
+            var s     = (String) cp.c;
+            var c     = cl.code (j, s);                                 // -1 => s does not occur
+            return switch (op) {
+            case EQ -> i -> codes [i] == c;
+            case NE -> i -> codes [i] != c;
+            default -> i -> op.test (cl.decode (j, codes [i]).compareTo (s));
+            }; // switch
+        } // default
+        } // switch
+    } // columnComparison
+
+} // Condition
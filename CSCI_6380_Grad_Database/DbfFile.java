@@ -0,0 +1,385 @@
+
+/*****************************************************************************************
+ * @file  DbfFile.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+import static java.lang.System.out;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+/*****************************************************************************************
+ * The DbfFile class reads and writes tables in a compact, versioned binary format.
+ * A file starts with a header (magic number, version, table name, attribute names,
+ * domains, primary key, storage layout, index map type and number of tuples) followed
+ * by chunks of at most CHUNK tuples.
+ * Each chunk holds its tuple count and then its values column by column, each encoded
+ * by its domain: fixed-width big-endian numbers and length-prefixed UTF-8 strings (a
+ * null string has length -1).  A column of numbers or characters starts with a flag
+ * byte; when it is 1, a bitmap marking the null values follows and the values it
+ * marks are omitted.  A chunk count of zero ends the file.  Both directions stream
+ * through a fixed-size buffer over an NIO file channel, so a table is never
+ * materialized as an object graph and the reader delivers tuples as soon as their
+ * chunk has been decoded.
+ */
+public class DbfFile
+{
+    /** Magic number at the start of every file ("DBF1")
+     */
+    private static final int MAGIC = 0x44424631;
+
+    /** The format version written (and read) by this class
+     */
+    private static final short VERSION = 4;
+
+    /** The maximum number of tuples per chunk
+     */
+    public static final int CHUNK = 4096;
+
+    /** The number of bytes in the I/O buffer
+     */
+    private static final int BUF_SIZE = 1 << 16;
+
+    /** Type codes for the supported domains
+     */
+    private static final byte LONG = 0, INT = 1, SHORT = 2, BYTE = 3,
+                              DOUBLE = 4, FLOAT = 5, CHAR = 6, STRING = 7;
+
+    /*************************************************************************************
+     * The header (schema) of a table file.
+     * @param name       the name of the table
+     * @param attribute  the attribute names
+     * @param domain     the attribute domains
+     * @param key        the primary key attributes
+     * @param store      the storage layout of the table
+     * @param map        the type of map used for the table's index
+     * @param rows       the number of tuples in the file
+     */
+    public record Header (String name, String [] attribute, Class [] domain, String [] key, String store, String map,
+                          long rows) {}
+
+    /*************************************************************************************
+     * Return the type code for the given domain.
+     * @param c  the domain (class)
+     */
+    private static byte typeOf (Class c)
+    {
+        return switch (c.getSimpleName ()) {
+        case "Long"      -> LONG;
+        case "Integer"   -> INT;
+        case "Short"     -> SHORT;
+        case "Byte"      -> BYTE;
+        case "Double"    -> DOUBLE;
+        case "Float"     -> FLOAT;
+        case "Character" -> CHAR;
+        case "String"    -> STRING;
+        default          -> throw new IllegalArgumentException (STR."DbfFile: unsupported domain \{c}");
+        }; // switch
+    } // typeOf
+
+    /*************************************************************************************
+     * Write the table with the given header and tuples to the file at path.  The file
+     * is written under a temporary name and then renamed, so a failed write leaves any
+     * previous version intact (and no temporary file).  Numeric values are converted to
+     * their attribute's domain.
+     * @param path    the path of the file
+     * @param header  the table's header (giving the number of tuples)
+     * @param tuples  the table's tuples
+     */
+    public static void write (String path, Header header, Iterable <Comparable []> tuples)
+    {
+        var file = Path.of (path);
+        var temp = Path.of (path + ".tmp");
+        try {
+            if (file.getParent () != null) Files.createDirectories (file.getParent ());
+            try (var w = new Writer (FileChannel.open (temp, CREATE, WRITE, TRUNCATE_EXISTING))) {
+                w.writeHeader (header);
+                var type  = new byte [header.domain.length];
+                for (var j = 0; j < type.length; j++) type [j] = typeOf (header.domain [j]);
+                var chunk = new ArrayList <Comparable []> (CHUNK);
+                for (var t : tuples) {
+                    chunk.add (t);
+                    if (chunk.size () == CHUNK) { w.writeChunk (chunk, type); chunk.clear (); }
+                } // for
+                if (! chunk.isEmpty ()) w.writeChunk (chunk, type);
+                w.need (4);
+                w.buf.putInt (0);                                       // end of file marker
+            } // try
+            Files.move (temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            out.println (STR."DbfFile.write: unable to write \{path}");
+            throw new UncheckedIOException (ex);
+        } finally {
+            try {
+                Files.deleteIfExists (temp);                            // only left when the write failed
+            } catch (IOException ex) {
+                out.println (STR."DbfFile.write: unable to delete \{temp}");
+            } // try
+        } // try
+    } // write
+
+    /*************************************************************************************
+     * Open the file at path for reading, reading its header.
+     * @param path  the path of the file
+     * @return  a reader delivering the table's tuples
+     */
+    public static Reader open (String path)
+    {
+        try {
+            return new Reader (FileChannel.open (Path.of (path), READ));
+        } catch (IOException ex) {
+            out.println (STR."DbfFile.open: unable to read \{path}");
+            throw new UncheckedIOException (ex);
+        } // try
+    } // open
+
+    /*************************************************************************************
+     * The Writer class buffers the encoded values and writes them to the channel.
+     */
+    private static class Writer
+            implements Closeable
+    {
+        private final FileChannel channel;
+        private final ByteBuffer  buf = ByteBuffer.allocate (BUF_SIZE);
+
+        Writer (FileChannel _channel) { channel = _channel; }
+
+        /** Make room for at least n bytes in the buffer, writing out what it holds.
+         */
+        void need (int n) throws IOException
+        {
+            if (buf.remaining () >= n) return;
+            buf.flip ();
+            while (buf.hasRemaining ()) channel.write (buf);
+            buf.clear ();
+        } // need
+
+        void writeString (String s) throws IOException
+        {
+            if (s == null) { need (4); buf.putInt (-1); return; }
+            var b = s.getBytes (UTF_8);
+            need (4 + Math.min (b.length, buf.capacity () - 4));
+            buf.putInt (b.length);
+            if (b.length <= buf.remaining ()) { buf.put (b); return; }
+            need (buf.capacity ());                                     // too large => write directly
+            var bb = ByteBuffer.wrap (b);
+            while (bb.hasRemaining ()) channel.write (bb);
+        } // writeString
+
+        void writeHeader (Header h) throws IOException
+        {
+            need (6);
+            buf.putInt (MAGIC).putShort (VERSION);
+            writeString (h.name);
+            writeString (h.store);
+            writeString (h.map);
+            need (8);
+            buf.putLong (h.rows);
+            need (4);
+            buf.putInt (h.attribute.length);
+            for (var j = 0; j < h.attribute.length; j++) {
+                writeString (h.attribute [j]);
+                writeString (h.domain [j].getSimpleName ());
+            } // for
+            need (4);
+            buf.putInt (h.key.length);
+            for (var k : h.key) writeString (k);
+        } // writeHeader
+
+        void writeChunk (List <Comparable []> chunk, byte [] type) throws IOException
+        {
+            need (4);
+            buf.putInt (chunk.size ());
+            for (var j = 0; j < type.length; j++) {
+                if (type [j] != STRING) writeNulls (chunk, j);
+                for (var t : chunk) {
+                    if (t [j] == null && type [j] != STRING) continue;     // marked in the bitmap
+                    switch (type [j]) {
+                    case LONG   -> { need (8); buf.putLong (((Number) t [j]).longValue ()); }
+                    case INT    -> { need (4); buf.putInt (((Number) t [j]).intValue ()); }
+                    case SHORT  -> { need (2); buf.putShort (((Number) t [j]).shortValue ()); }
+                    case BYTE   -> { need (1); buf.put (((Number) t [j]).byteValue ()); }
+                    case DOUBLE -> { need (8); buf.putDouble (((Number) t [j]).doubleValue ()); }
+                    case FLOAT  -> { need (4); buf.putFloat (((Number) t [j]).floatValue ()); }
+                    case CHAR   -> { need (2); buf.putChar ((Character) t [j]); }
+                    default     -> writeString ((String) t [j]);
+                    } // switch
+                } // for
+            } // for
+        } // writeChunk
+
+        /** Write the flag for column j of the chunk and, if it holds nulls, their bitmap.
+         */
+        void writeNulls (List <Comparable []> chunk, int j) throws IOException
+        {
+            byte [] bits = null;
+            var i = 0;
+            for (var t : chunk) {
+                if (t [j] == null) {
+                    if (bits == null) bits = new byte [(chunk.size () + 7) / 8];
+                    bits [i >> 3] |= (byte) (1 << (i & 7));
+                } // if
+                i += 1;
+            } // for
+            need (1);
+            buf.put ((byte) ((bits == null) ? 0 : 1));
+            if (bits == null) return;
+            need (bits.length);
+            buf.put (bits);
+        } // writeNulls
+
+        public void close () throws IOException
+        {
+            need (buf.capacity ());                                     // forces out the buffer
+            channel.close ();
+        } // close
+
+    } // Writer
+
+    /*************************************************************************************
+     * The Reader class streams the tuples of a table file, decoding a chunk at a time.
+     */
+    public static class Reader
+           implements Iterator <Comparable []>, Closeable
+    {
+        private final FileChannel channel;
+        private ByteBuffer buf = ByteBuffer.allocate (BUF_SIZE).limit (0);
+        private final Header header;
+        private final byte [] type;
+        private Comparable [][] chunk = new Comparable [0][];
+        private int next = 0;
+        private boolean done = false;
+
+        Reader (FileChannel _channel) throws IOException
+        {
+            channel = _channel;
+            need (6);
+            var magic   = buf.getInt ();
+            var version = buf.getShort ();
+            if (magic != MAGIC || version != VERSION) {
+                channel.close ();
+                throw new IOException (STR."DbfFile: not a version \{VERSION} table file");
+            } // if
+            var name      = readString ();
+            var store     = readString ();
+            var map       = readString ();
+            need (8);
+            var rows      = buf.getLong ();
+            need (4);
+            var attribute = new String [buf.getInt ()];
+            var domain    = new Class [attribute.length];
+            type          = new byte [attribute.length];
+            for (var j = 0; j < attribute.length; j++) {
+                attribute [j] = readString ();
+                try {
+                    domain [j] = Class.forName (STR."java.lang.\{readString ()}");
+                } catch (ClassNotFoundException ex) {
+                    throw new IOException ("DbfFile: unknown domain", ex);
+                } // try
+                type [j] = typeOf (domain [j]);
+            } // for
+            need (4);
+            var key = new String [buf.getInt ()];
+            for (var k = 0; k < key.length; k++) key [k] = readString ();
+            header = new Header (name, attribute, domain, key, store, map, rows);
+        } // constructor
+
+        /** Return the header of the table file.
+         */
+        public Header header () { return header; }
+
+        /** Make sure at least n bytes are in the buffer, reading more from the channel.
+         */
+        private void need (int n) throws IOException
+        {
+            if (buf.remaining () >= n) return;
+            if (n > buf.capacity ()) buf = ByteBuffer.allocate (n).put (buf).flip ();
+            buf.compact ();
+            while (buf.position () < n) {
+                if (channel.read (buf) < 0) throw new EOFException ("DbfFile: truncated file");
+            } // while
+            buf.flip ();
+        } // need
+
+        private String readString () throws IOException
+        {
+            need (4);
+            var len = buf.getInt ();
+            if (len < 0) return null;
+            need (len);
+            var s = new String (buf.array (), buf.position (), len, UTF_8);
+            buf.position (buf.position () + len);
+            return s;
+        } // readString
+
+        /** Decode the next chunk of tuples (an empty chunk at the end of the file).
+         */
+        private void readChunk () throws IOException
+        {
+            need (4);
+            var n = buf.getInt ();
+            chunk = new Comparable [n][type.length];
+            next  = 0;
+            if (n == 0) { done = true; return; }
+            for (var j = 0; j < type.length; j++) {
+                byte [] bits = null;
+                if (type [j] != STRING) {
+                    need (1);
+                    if (buf.get () != 0) {
+                        bits = new byte [(n + 7) / 8];
+                        need (bits.length);
+                        buf.get (bits);
+                    } // if
+                } // if
+                for (var i = 0; i < n; i++) {
+                    if (bits != null && (bits [i >> 3] & (1 << (i & 7))) != 0) continue;   // null
+                    chunk [i][j] = switch (type [j]) {
+                    case LONG   -> { need (8); yield buf.getLong (); }
+                    case INT    -> { need (4); yield buf.getInt (); }
+                    case SHORT  -> { need (2); yield buf.getShort (); }
+                    case BYTE   -> { need (1); yield buf.get (); }
+                    case DOUBLE -> { need (8); yield buf.getDouble (); }
+                    case FLOAT  -> { need (4); yield buf.getFloat (); }
+                    case CHAR   -> { need (2); yield buf.getChar (); }
+                    default     -> readString ();
+                    }; // switch
+                } // for
+            } // for
+        } // readChunk
+
+        public boolean hasNext ()
+        {
+            try {
+                while (! done && next == chunk.length) readChunk ();
+            } catch (IOException ex) {
+                out.println ("DbfFile.Reader: IO Exception");
+                throw new UncheckedIOException (ex);
+            } // try
+            return ! done;
+        } // hasNext
+
+        public Comparable [] next ()
+        {
+            if (! hasNext ()) throw new NoSuchElementException ();
+            return chunk [next++];
+        } // next
+
+        public void close ()
+        {
+            try {
+                channel.close ();
+            } catch (IOException ex) {
+                out.println ("DbfFile.Reader: unable to close");
+            } // try
+        } // close
+
+    } // Reader
+
+} // DbfFile
@@ -0,0 +1,298 @@
+
+/*****************************************************************************************
+ * @file  ExternalSort.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/*****************************************************************************************
+ * The ExternalSort class sorts a stream of tuples that may be too large to fit in memory.
+ * Tuples are read in runs of at most 'runSize' tuples, each run is sorted in memory and
+ * (when more than one run is needed) spilled to a temporary file in the storage directory.
+ * The sorted runs are then combined by a k-way merge that reads them back sequentially,
+ * so memory use is bounded by one run plus one buffered tuple per merged run.  When there
+ * are more than FAN_IN runs, groups of FAN_IN runs are first merged into longer runs, so
+ * no more than FAN_IN run files are open at once.  Run files are deleted as soon as they
+ * are read to the end or the sorted iterator is closed.
+ */
+public class ExternalSort
+{
+    /** Relative path for storage directory (where the sorted runs are spilled)
+     */
+    private static final String DIR = "store" + File.separator;
+
+    /** Filename extension for run files
+     */
+    private static final String EXT = ".run";
+
+    /** Default maximum number of tuples held in memory for a single run
+     */
+    public static final int RUN_SIZE = 1 << 16;
+
+    /** Maximum number of runs merged at once (bounds the number of open run files)
+     */
+    public static final int FAN_IN = 64;
+
+    /** Number of tuples written between resets of an object stream (bounds its handle table)
+     */
+    private static final int RESET = 1024;
+
+    /************************************************************************************
+     * Sort the tuples delivered by the input iterator using the given comparator.
+     * If all the tuples fit in one run, the sort is done entirely in memory.  The caller
+     * must close the returned iterator (e.g., in a try-with-resources) so that any run
+     * files not yet read to the end are deleted.
+     *
+     * @param input    the iterator delivering the unsorted tuples
+     * @param cmp      the comparator defining the sort order
+     * @param runSize  the maximum number of tuples to hold in memory at once
+     * @return  a closeable iterator delivering the tuples in sorted order
+     */
+    public static Sorted sort (Iterator <Comparable []> input, Comparator <Comparable []> cmp, int runSize)
+    {
+        var runs = new ArrayList <File> ();
+        var buf  = new ArrayList <Comparable []> (Math.min (runSize, 1024));
+
+        try {
+            while (input.hasNext ()) {
+                buf.add (input.next ());
+                if (buf.size () >= runSize) {
+                    buf.sort (cmp);
+                    runs.add (spill (buf.iterator (), buf.size ()));
+                    buf.clear ();
+                } // if
+            } // while
+
+            buf.sort (cmp);
+            if (runs.isEmpty ()) return new InMemory (buf.iterator ());  // fits in memory => no merge
+            if (! buf.isEmpty ()) runs.add (spill (buf.iterator (), buf.size ()));
+            buf = null;
+
+            while (runs.size () > FAN_IN) runs = mergePass (runs, cmp);  // too many runs => merge groups
+            return new Merger (runs, cmp);
+        } catch (RuntimeException ex) {
+            for (var f : runs) f.delete ();
+            throw ex;
+        } // try
+    } // sort
+
+    /************************************************************************************
+     * Merge each group of FAN_IN runs into one longer run, reducing the number of runs
+     * by a factor of FAN_IN.  The runs merged are deleted as they are read.
+     *
+     * @param runs  the files holding the sorted runs
+     * @param cmp   the comparator defining the sort order
+     * @return  the files holding the merged runs
+     */
+    private static ArrayList <File> mergePass (List <File> runs, Comparator <Comparable []> cmp)
+    {
+        var merged = new ArrayList <File> ((runs.size () + FAN_IN - 1) / FAN_IN);
+        try {
+            for (var i = 0; i < runs.size (); i += FAN_IN) {
+                var group = runs.subList (i, Math.min (i + FAN_IN, runs.size ()));
+                if (group.size () == 1) { merged.add (group.get (0)); continue; }
+                try (var m = new Merger (group, cmp)) {
+                    merged.add (spill (m, m.left));
+                } // try
+            } // for
+        } catch (RuntimeException ex) {
+            for (var f : merged) f.delete ();
+            throw ex;
+        } // try
+        return merged;
+    } // mergePass
+
+    /************************************************************************************
+     * Write a sorted run to a new temporary file in the storage directory.  The file is
+     * deleted if it cannot be completely written.
+     *
+     * @param run   the iterator delivering the sorted tuples making up the run
+     * @param size  the number of tuples in the run
+     * @return  the file holding the run
+     */
+    private static File spill (Iterator <Comparable []> run, int size)
+    {
+        File file = null;
+        try {
+            var dir = new File (DIR);
+            dir.mkdirs ();
+            file = File.createTempFile ("sort", EXT, dir);
+            try (var oos = new ObjectOutputStream (new BufferedOutputStream (new FileOutputStream (file), 1 << 16))) {
+                oos.writeInt (size);
+                for (var n = 0; n < size; n++) {
+                    oos.writeUnshared (run.next ());
+                    if ((n + 1) % RESET == 0) oos.reset ();
+                } // for
+            } // try
+            return file;
+        } catch (IOException ex) {
+            if (file != null) file.delete ();
+            out.println ("ExternalSort.spill: IO Exception");
+            throw new UncheckedIOException (ex);
+        } catch (RuntimeException ex) {
+            if (file != null) file.delete ();
+            throw ex;
+        } // try
+    } // spill
+
+//-----------------------------------------------------------------------------------
+// Sorted interface and InMemory inner class
+//-----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * The Sorted interface is an iterator over sorted tuples that must be closed to
+     * release (and delete) the run files it still holds.
+     */
+    public interface Sorted
+           extends Iterator <Comparable []>, Closeable
+    {
+        void close ();
+    } // Sorted
+
+    /************************************************************************************
+     * The InMemory inner class delivers tuples that were sorted without spilling, so
+     * there is nothing to release on close.
+     */
+    private static class InMemory
+            implements Sorted
+    {
+        private final Iterator <Comparable []> it;                   // iterator over the sorted buffer
+
+        InMemory (Iterator <Comparable []> _it) { it = _it; }
+
+        public boolean hasNext () { return it.hasNext (); }
+
+        public Comparable [] next () { return it.next (); }
+
+        public void close () { }
+
+    } // InMemory
+
+//-----------------------------------------------------------------------------------
+// Run inner class
+//-----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * The Run inner class reads back a sorted run one tuple at a time, keeping only the
+     * current head tuple in memory.  The run's file is deleted when the run is closed,
+     * which happens automatically once its last tuple is read.
+     */
+    private static class Run
+    {
+        private final File              file;                        // file holding the run
+        private final ObjectInputStream ois;                         // stream reading the run
+        private int                     left;                        // number of tuples left to read
+        private Comparable []           head;                        // current (smallest unread) tuple
+
+        Run (File _file) throws IOException
+        {
+            file = _file;
+            var in = new FileInputStream (file);
+            try {
+                ois  = new ObjectInputStream (new BufferedInputStream (in, 1 << 16));
+                left = ois.readInt ();
+            } catch (IOException ex) {
+                in.close ();
+                throw ex;
+            } // try
+            advance ();
+        } // constructor
+
+        /** Move to the next tuple in the run, closing and deleting the file at the end.
+         */
+        void advance () throws IOException
+        {
+            if (left == 0) {
+                close ();
+                return;
+            } // if
+            try {
+                head = (Comparable []) ois.readUnshared ();
+            } catch (ClassNotFoundException ex) {
+                throw new IOException (ex);
+            } // try
+            left -= 1;
+        } // advance
+
+        /** Close the stream reading the run and delete its file.
+         */
+        void close ()
+        {
+            head = null;
+            left = 0;
+            try {
+                ois.close ();
+            } catch (IOException ex) {
+                out.println ("ExternalSort.Run.close: IO Exception");
+            } // try
+            file.delete ();
+        } // close
+
+    } // Run
+
+//-----------------------------------------------------------------------------------
+// Merger inner class
+//-----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * The Merger inner class performs a k-way merge of sorted runs using a priority queue
+     * ordered on the head tuple of each run.  Closing the merger closes the runs not yet
+     * exhausted and deletes their files.
+     */
+    private static class Merger
+            implements Sorted
+    {
+        private final PriorityQueue <Run> pq;                        // runs ordered by their head tuples
+        private int                       left;                      // number of tuples left to deliver
+
+        Merger (List <File> files, Comparator <Comparable []> cmp)
+        {
+            pq = new PriorityQueue <> (files.size (), (r1, r2) -> cmp.compare (r1.head, r2.head));
+            var i = 0;
+            try {
+                for ( ; i < files.size (); i++) {
+                    var run = new Run (files.get (i));
+                    if (run.head != null) { pq.add (run); left += run.left + 1; }
+                } // for
+            } catch (IOException ex) {
+                close ();
+                for ( ; i < files.size (); i++) files.get (i).delete ();
+                out.println ("ExternalSort.Merger: IO Exception");
+                throw new UncheckedIOException (ex);
+            } // try
+        } // constructor
+
+        public boolean hasNext () { return ! pq.isEmpty (); }
+
+        public Comparable [] next ()
+        {
+            if (pq.isEmpty ()) throw new NoSuchElementException ();
+            var run = pq.poll ();
+            var tup = run.head;
+            try {
+                run.advance ();
+            } catch (IOException ex) {
+                run.close ();
+                out.println ("ExternalSort.Merger.next: IO Exception");
+                throw new UncheckedIOException (ex);
+            } // try
+            if (run.head != null) pq.add (run);
+            left -= 1;
+            return tup;
+        } // next
+
+        public void close ()
+        {
+            for (Run run; (run = pq.poll ()) != null; ) run.close ();
+            left = 0;
+        } // close
+
+    } // Merger
+
+} // ExternalSort
+
@@ -6,55 +6,227 @@
  */
 
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import static java.lang.System.out;
+import static java.nio.file.StandardOpenOption.*;
 import java.util.*;
 
 /*******************************************************************************
  * This class allows data tuples/tuples (e.g., those making up a relational table)
  * to be stored in a random access file.  This implementation requires that each
- * tuple be packed into a fixed length byte array.
+ * tuple be packed into a fixed length byte array.  The file is memory-mapped in
+ * segments, so 'get' and 'add' are memory accesses rather than system calls, and
+ * the operating system pages records in and out as needed (the list may be larger
+ * than the heap).  The first segment is small and each one after it is twice as
+ * large, up to SEGMENT bytes, so a small table's file stays small.  The file starts
+ * with a small header holding the number of records and the record size, so a
+ * serialized FileList (or a loaded table, see reopen) reopens its file rather than
+ * copying it.
  */
 public class FileList
        extends AbstractList <Comparable []>
-       implements List <Comparable []>, RandomAccess
+       implements List <Comparable []>, RandomAccess, Serializable
 {
+    /** Relative path for storage directory
+     */
+    private static final String DIR = "store" + File.separator;
+
     /** File extension for data files.
      */
     private static final String EXT = ".dat";
 
-    /** The random access file that holds the tuples.
+    /** The number of bytes in the file header (holds the record count and size).
+     */
+    private static final int HDR = 64;
+
+    /** The target number of bytes in the first mapped segment.
+     */
+    private static final int FIRST = 1 << 16;
+
+    /** The maximum number of bytes per mapped segment.
      */
-    private RandomAccessFile file;
+    private static final int SEGMENT = 1 << 26;
+
+    /** The channel for the file that holds the tuples.
+     */
+    private transient FileChannel file;
+
+    /** The mapped header region of the file.
+     */
+    private transient MappedByteBuffer header;
+
+    /** The mapped segments of the file holding the records (replaced when a segment
+     *  is added, so concurrent readers see a consistent array).
+     */
+    private transient volatile MappedByteBuffer [] segment;
 
     /** The name of table.
      */
     private final String tableName;
 
+    /** The codec that packs tuples into records (and unpacks them).
+     */
+    private final RecordCodec codec;
+
     /** The number bytes required to store a "packed tuple"/record.
      */
     private final int recordSize;
 
+    /** The number of records held in the first mapped segment.
+     */
+    private final int first;
+
+    /** The number of segments that double in size (segment s < levels holds first << s
+     *  records, the ones after it hold first << levels).
+     */
+    private final int levels;
+
+    /** The number of records held in each segment after the doubling ones.
+     */
+    private final int perSegment;
+
+    /** The number of records held in the doubling segments.
+     */
+    private final int doubled;
+
     /** Counter for the number of tuples in this list.
      */
-    private int nRecords = 0;
+    private transient int nRecords = 0;
+
+    /***************************************************************************
+     * Construct a FileList, starting with an empty file.
+     * @param _tableName  the name of the table
+     * @param _domain     the domains of the table's attributes (fix the record layout)
+     */
+    public FileList (String _tableName, Class [] _domain)
+    {
+        this (_tableName, _domain, true);
+    } // constructor
 
     /***************************************************************************
-     * Construct a FileList.
-     * @param _tableName   the name of the table
-     * @param _recordSize  the size of tuple in bytes.
+     * Construct a FileList, starting with an empty file or reopening the records
+     * already in the table's file.
+     * @param _tableName  the name of the table
+     * @param _domain     the domains of the table's attributes (fix the record layout)
+     * @param create      whether to start with an empty file
      */
-    public FileList (String _tableName, int _recordSize)
+    private FileList (String _tableName, Class [] _domain, boolean create)
     {
         tableName  = _tableName;
-        recordSize = _recordSize;
+        codec      = new RecordCodec (_domain);
+        recordSize = codec.size ();
+        first      = Math.max (1, FIRST / Math.max (recordSize, 1));
+        var n      = 0;
+        while ((long) first << (n + 1) <= SEGMENT / Math.max (recordSize, 1)) n += 1;
+        levels     = n;
+        perSegment = first << levels;
+        doubled    = perSegment - first;
+        open (create);
+    } // constructor
+
+    /***************************************************************************
+     * Reopen the table's existing file if it holds the given number of records
+     * laid out for the given domains, so a loaded table need not copy its tuples
+     * into a new file.
+     * @param _tableName  the name of the table
+     * @param _domain     the domains of the table's attributes
+     * @param rows        the number of records the file must hold
+     * @return  the reopened list, or null if there is no such file
+     */
+    public static FileList reopen (String _tableName, Class [] _domain, long rows)
+    {
+        if (! Files.exists (Path.of (DIR + _tableName + EXT))) return null;
+        var fl = new FileList (_tableName, _domain, false);
+        if (fl.recordSize == fl.header.getInt (4) && fl.nRecords == rows) return fl;
+        fl.close ();                                                    // different layout or contents
+        return null;
+    } // reopen
 
+    /***************************************************************************
+     * Open (or create) the file and map its header.
+     * @param create  whether to start with an empty file
+     */
+    private void open (boolean create)
+    {
+        segment = new MappedByteBuffer [0];
         try {
-            file = new RandomAccessFile (tableName + EXT, "rw");
-        } catch (FileNotFoundException ex) {
+            Files.createDirectories (Path.of (DIR));
+            var path = Path.of (DIR + tableName + EXT);
+            file   = create ? FileChannel.open (path, CREATE, READ, WRITE, TRUNCATE_EXISTING)
+                            : FileChannel.open (path, CREATE, READ, WRITE);
+            header = file.map (FileChannel.MapMode.READ_WRITE, 0, HDR);
+            if (create) header.putInt (0, 0).putInt (4, recordSize);
+            nRecords = header.getInt (0);
+        } catch (IOException ex) {
             file = null;
-            out.println ("FileList.constructor: unable to open - " + ex);
+            out.println ("FileList.open: unable to open - " + ex);
+            throw new UncheckedIOException (ex);
         } // try
-    } // constructor
+    } // open
+
+    /***************************************************************************
+     * Return the index of the segment holding record i.
+     * @param i  the index of the record
+     */
+    private int segmentOf (int i)
+    {
+        if (i < doubled) return 31 - Integer.numberOfLeadingZeros (i / first + 1);
+        return levels + (i - doubled) / perSegment;
+    } // segmentOf
+
+    /***************************************************************************
+     * Return the index of the first record in segment s.
+     * @param s  the index of the segment
+     */
+    private long startOf (int s)
+    {
+        return (s <= levels) ? (long) first * ((1L << s) - 1) : doubled + (long) (s - levels) * perSegment;
+    } // startOf
+
+    /***************************************************************************
+     * Return the byte offset of record i within segment s (the one holding it).
+     * @param s  the index of the segment
+     * @param i  the index of the record
+     */
+    private int offsetOf (int s, int i)
+    {
+        return (int) (i - startOf (s)) * recordSize;
+    } // offsetOf
+
+    /***************************************************************************
+     * Return the mapped segment s.
+     * @param s  the index of the segment
+     */
+    private MappedByteBuffer segment (int s)
+    {
+        var seg = segment;
+        return (s < seg.length) ? seg [s] : map (s);
+    } // segment
+
+    /***************************************************************************
+     * Map the segments up to segment s (and so extend the file) if needed.
+     * @param s  the index of the segment
+     */
+    private synchronized MappedByteBuffer map (int s)
+    {
+        var seg = segment;
+        if (s < seg.length) return seg [s];
+        seg = Arrays.copyOf (seg, s + 1);
+        for (var k = segment.length; k <= s; k++) {
+            var records = (k < levels) ? first << k : perSegment;
+            try {
+                seg [k] = file.map (FileChannel.MapMode.READ_WRITE, HDR + startOf (k) * recordSize,
+                                    (long) records * recordSize);
+            } catch (IOException ex) {
+                out.println ("FileList.map: unable to map - " + ex);
+                throw new UncheckedIOException (ex);
+            } // try
+        } // for
+        segment = seg;
+        return seg [s];
+    } // map
 
     /***************************************************************************
      * Add a new tuple into the file list by packing it into a record and writing
@@ -65,36 +237,58 @@ public class FileList
      */
     public boolean add (Comparable [] tuple)
     {
-        byte [] record = null;  // FIX: table.pack (tuple);
-
-        if (record.length != recordSize) {
-            out.println ("FileList.add: wrong record size " + record.length);
+        if (tuple.length != codec.arity ()) {
+            out.println ("FileList.add: wrong tuple size " + tuple.length);
             return false;
         } // if
 
-             //-----------------\\
-            // TO BE IMPLEMENTED \\
-           //---------------------\\
-
+        var s = segmentOf (nRecords);
+        codec.write (segment (s), offsetOf (s, nRecords), tuple);
+        nRecords += 1;
+        header.putInt (0, nRecords);
+        modCount += 1;
         return true;
     } // add
 
     /***************************************************************************
-     * Get the ith tuple by seeking to the correct file position and reading the
-     * record.
+     * Get the ith tuple by locating its record in the mapped file and unpacking it.
      * @param i  the index of the tuple to get
      * @return  the ith tuple
      */
     public Comparable [] get (int i)
     {
-        var record = new byte [recordSize];
+        Objects.checkIndex (i, nRecords);
+        var s = segmentOf (i);
+        return codec.read (segment (s), offsetOf (s, i));
+    } // get
 
-             //-----------------\\
-            // TO BE IMPLEMENTED \\
-           //---------------------\\
+    /***************************************************************************
+     * Replace the ith tuple by overwriting its record.
+     * @param i      the index of the tuple to replace
+     * @param tuple  the new tuple
+     * @return  the previous tuple
+     */
+    public Comparable [] set (int i, Comparable [] tuple)
+    {
+        var old = get (i);
+        var s   = segmentOf (i);
+        codec.write (segment (s), offsetOf (s, i), tuple);
+        return old;
+    } // set
 
-        return null;   // FIX: table.unpack (record);
-    } // get
+    /***************************************************************************
+     * Get the raw record for the ith tuple.
+     * @param i  the index of the record to get
+     * @return  the packed record
+     */
+    public byte [] getRecord (int i)
+    {
+        Objects.checkIndex (i, nRecords);
+        var record = new byte [recordSize];
+        var s      = segmentOf (i);
+        segment (s).get (offsetOf (s, i), record);
+        return record;
+    } // getRecord
 
     /***************************************************************************
      * Return the size of the file list in terms of the number of tuples/records.
@@ -105,17 +299,45 @@ public class FileList
         return nRecords;
     } // size
 
+    /***************************************************************************
+     * Force the mapped records to be written to the file.
+     */
+    public void flush ()
+    {
+        header.force ();
+        for (var s : segment) s.force ();
+    } // flush
+
     /***************************************************************************
      * Close the file.
      */
     public void close ()
     {
         try {
+            flush ();
             file.close ();
         } catch (IOException ex) {
             out.println ("FileList.close: unable to close - " + ex);
         } // try
     } // close
 
-} // FileList class
+    /***************************************************************************
+     * Flush the records before serializing (only the file name and layout are
+     * written, the records stay in the file).
+     */
+    private void writeObject (ObjectOutputStream oos) throws IOException
+    {
+        flush ();
+        oos.defaultWriteObject ();
+    } // writeObject
 
+    /***************************************************************************
+     * Reopen the file after deserializing.
+     */
+    private void readObject (ObjectInputStream ois) throws IOException, ClassNotFoundException
+    {
+        ois.defaultReadObject ();
+        open (false);
+    } // readObject
+
+} // FileList class
@@ -8,12 +8,20 @@
  */
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import static java.lang.System.out;
 
 /*****************************************************************************************
  * The KeyType class provides a key type for handling both non-composite and composite keys.
  * A key is a minimal set of attributes that can be used to uniquely identify a tuple.
+ * Since keys are probed and compared constantly by the indices, the hash code is computed
+ * (and its bits spread) once at construction, each attribute value is compared only once,
+ * common domains are compared without going through Comparable, and a key consisting of a
+ * single integral value is hashed as a long and compared as one against a key holding a
+ * value of the same class.  Values of different classes are never equal (e.g., Integer 5
+ * is not Long 5, and a Character is not a number), whatever the number of attributes.
+ * The values of a key must not be changed after the key is constructed.
  */
 public class KeyType
        implements Comparable <KeyType>, Serializable
@@ -22,13 +30,28 @@ public class KeyType
      */
     private final Comparable [] key;
 
+    /** The hash code of the key (computed once)
+     */
+    private final int hash;
+
+    /** Whether the key is a single integral value (Integer, Long, Short, Byte or Character)
+     */
+    private final boolean integral;
+
+    /** The value of a single integral key as a long
+     */
+    private final long num;
+
     /*************************************************************************************
      * Construct an instance of KeyType from a Comparable array.  
      * @param _key  the primary key
      */
     public KeyType (Comparable [] _key)
     {
-         key = _key;
+         key      = _key;
+         integral = key.length == 1 && isIntegral (key [0]);
+         num      = integral ? toLong (key [0]) : 0L;
+         hash     = integral ? mix (Long.hashCode (num)) : hash (key);
     } // constructor
 
     /*************************************************************************************
@@ -37,26 +60,103 @@ public class KeyType
      */
     public KeyType (Comparable key0, Comparable ... keys)
     {
-         key = new Comparable [keys.length + 1];
+         this (prepend (key0, keys));
+    } // constructor
+
+    /*************************************************************************************
+     * Return whether value v has an integer type, so that it can be converted to a
+     * long without losing anything.
+     * @param v  the value
+     */
+    public static boolean isIntegral (Comparable v)
+    {
+        return v instanceof Integer || v instanceof Long || v instanceof Short ||
+               v instanceof Byte    || v instanceof Character;
+    } // isIntegral
+
+    /*************************************************************************************
+     * Convert an integer-typed value to a long.
+     * @param v  the value
+     */
+    public static long toLong (Comparable v)
+    {
+        return (v instanceof Character c) ? c : ((Number) v).longValue ();
+    } // toLong
+
+    /*************************************************************************************
+     * Return an array holding key0 followed by keys.
+     */
+    private static Comparable [] prepend (Comparable key0, Comparable [] keys)
+    {
+         var key = new Comparable [keys.length + 1];
          key [0] = key0;
          for (var i = 1; i < key.length; i++) key [i] = keys [i-1];
-    } // constructor
+         return key;
+    } // prepend
+
+    /*************************************************************************************
+     * Compute the hash code of the attribute values, spreading its bits so that hashed
+     * indices using the low-order bits (e.g., LinHashMap) see well-distributed values.
+     */
+    private static int hash (Comparable [] key)
+    {
+        var h = 0;
+        for (var v : key) h = 31 * h + ((v == null) ? 0 : v.hashCode ());
+        return mix (h);
+    } // hash
+
+    /*************************************************************************************
+     * Spread the bits of a hash code (the finalizer of MurmurHash3).
+     */
+    private static int mix (int h)
+    {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    } // mix
+
+    /*************************************************************************************
+     * Return the array of attribute values making up this key.
+     * @return  the key values
+     */
+    public Comparable [] getKey ()
+    {
+        return key;
+    } // getKey
 
     /*************************************************************************************
      * Compare two keys (negative => less than, zero => equals, positive => greater than).
      * @param k  the other key (to compare with this)
      * @return  resultant integer that's negative, zero or positive
      */
-    @SuppressWarnings("unchecked")
     public int compareTo (KeyType k)
     {
+        if (integral && k.integral && sameClass (k)) return Long.compare (num, k.num);
+        if (key.length == 1) return compare (key [0], k.key [0]);
         for (var i = 0; i < key.length; i++) {
-            if (key [i].compareTo (k.key [i]) < 0) return -1;
-            if (key [i].compareTo (k.key [i]) > 0) return 1;
+            var c = compare (key [i], k.key [i]);
+            if (c != 0) return c;
         } // for
         return 0;
     } // compareTo
 
+    /*************************************************************************************
+     * Compare two attribute values, handling the common domains directly.
+     * @param a  the first value
+     * @param b  the second value
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare (Comparable a, Comparable b)
+    {
+        if (a instanceof String x && b instanceof String y)   return x.compareTo (y);
+        if (a instanceof Integer x && b instanceof Integer y) return Integer.compare (x, y);
+        if (a instanceof Long x && b instanceof Long y)       return Long.compare (x, y);
+        if (a instanceof Double x && b instanceof Double y)   return Double.compare (x, y);
+        return a.compareTo (b);
+    } // compare
+
     /*************************************************************************************
      * Determine whether two keys are equal (equals must agree with compareTo).
      * @param k  the other key (to compare with this)
@@ -64,18 +164,28 @@ public class KeyType
      */
     public boolean equals (Object k)
     {
-        return compareTo ((KeyType) k) == 0;
+        if (this == k) return true;
+        if (! (k instanceof KeyType kt) || hash != kt.hash) return false;
+        if (integral && kt.integral) return num == kt.num && sameClass (kt);
+        return Arrays.equals (key, kt.key);                             // agrees with compareTo, never throws
     } // equals
 
     /*************************************************************************************
-     * Compute a hash code for this object (equal objects should produce the same hash code).
+     * Return whether the single value of this key has the same class as that of key k.
+     * @param k  the other key
+     */
+    private boolean sameClass (KeyType k)
+    {
+        return key [0].getClass () == k.key [0].getClass ();
+    } // sameClass
+
+    /*************************************************************************************
+     * Return the hash code for this key (equal keys produce the same hash code).
      * @return  an integer hash code value
      */
     public int hashCode ()
     {
-        var sum = 0;
-        for (var i = 0; i < key.length; i++) sum = 7 * sum + key [i].hashCode ();
-        return sum;
+        return hash;
     } // hashCode
 
     /*************************************************************************************
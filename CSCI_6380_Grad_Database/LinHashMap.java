@@ -21,11 +21,7 @@ public class LinHashMap <K, V>
        extends AbstractMap <K, V>
        implements Serializable, Cloneable, Map <K, V>
 {
-    /** The debug flag
-     */
-    private static final boolean DEBUG = true;
-
-    /** The number of slots (for key-value pairs) per bucket.
+    /** The default number of slots (for key-value pairs) per bucket.
      */
     private static final int SLOTS = 4;
 
@@ -41,6 +37,10 @@ public class LinHashMap <K, V>
      */
     private final Class <V> classV;
 
+    /** The number of slots (for key-value pairs) per bucket in this hash table.
+     */
+    private final int slots;
+
 //-----------------------------------------------------------------------------------
 // Bucket inner class
 //-----------------------------------------------------------------------------------
@@ -49,6 +49,7 @@ public class LinHashMap <K, V>
      * The `Bucket` inner class defines buckets that are stored in the hash table.
      */
     private class Bucket
+            implements Serializable
     {
         int    keys;                                                         // number of active keys
         K []   key;                                                          // array of keys
@@ -59,15 +60,15 @@ public class LinHashMap <K, V>
         Bucket ()
         {
             keys = 0;
-            key   = (K []) Array.newInstance (classK, SLOTS);
-            value = (V []) Array.newInstance (classV, SLOTS);
+            key   = (K []) Array.newInstance (classK, slots);
+            value = (V []) Array.newInstance (classV, slots);
             next  = null;
         } // constructor
 
-        V find (K k)
+        int find (K k)
         {
-            for (var j = 0; j < keys; j++) if (key[j].equals (k)) return value[j];
-            return null;
+            for (var j = 0; j < keys; j++) if (key[j].equals (k)) return j;
+            return -1;
         } // find
 
         void add (K k, V v)
@@ -121,8 +122,21 @@ public class LinHashMap <K, V>
      */
     public LinHashMap (Class <K> _classK, Class <V> _classV)
     {
+        this (_classK, _classV, SLOTS);
+    } // constructor
+
+    /********************************************************************************
+     * Construct a hash table that uses Linear Hashing with the given bucket capacity.
+     * @param classK  the class for keys (K)
+     * @param classV  the class for values (V)
+     * @param _slots  the number of slots (key-value pairs) per bucket
+     */
+    public LinHashMap (Class <K> _classK, Class <V> _classV, int _slots)
+    {
+        if (_slots < 1) throw new IllegalArgumentException (STR."LinHashMap: slots \{_slots} < 1");
         classK = _classK;
         classV = _classV;
+        slots  = _slots;
         mod1   = 4;                                                          // initial size
         mod2   = 2 * mod1;
         hTable = new ArrayList <> ();
@@ -130,16 +144,22 @@ public class LinHashMap <K, V>
     } // constructor
 
     /********************************************************************************
-     * Return the size (SLOTS * number of home buckets) of the hash table. 
-     * @return  the size of the hash table
+     * Return the size (number of keys) in the hash table.
+     * @return  the number of key-value pairs
+     */
+    public int size () { return kCount; }
+
+    /********************************************************************************
+     * Return the capacity (slots * number of home buckets) of the hash table.
+     * @return  the capacity of the hash table
      */
-    public int size () { return SLOTS * (mod1 + isplit); }
+    public int capacity () { return slots * (mod1 + isplit); }
 
     /********************************************************************************
      * Return the load factor for the hash table.
      * @return  the load factor
      */
-    private double loadFactor () { return kCount / (double) size (); }
+    private double loadFactor () { return kCount / (double) capacity (); }
 
 //-----------------------------------------------------------------------------------
 // Retrieve values or entry set
@@ -151,26 +171,74 @@ public class LinHashMap <K, V>
      */
     public Set <Map.Entry <K, V>> entrySet ()
     {
-        var enSet = new HashSet <Map.Entry <K, V>> ();
-
-        //  T O   B E   I M P L E M E N T E D
-            
-        return enSet;
+        return new AbstractSet <Map.Entry <K, V>> () {
+            public int size () { return kCount; }
+            public Iterator <Map.Entry <K, V>> iterator ()
+            {
+                return new Iterator <> () {
+                    private int    i = 0;                                    // current bucket chain
+                    private Bucket b = hTable.get (0);                       // current bucket
+                    private int    j = 0;                                    // current slot
+
+                    public boolean hasNext ()
+                    {
+                        while (b == null || j >= b.keys) {
+                            if (b != null && b.next != null) { b = b.next; j = 0; continue; }
+                            if (++i >= hTable.size ()) return false;
+                            b = hTable.get (i); j = 0;
+                        } // while
+                        return true;
+                    } // hasNext
+
+                    public Map.Entry <K, V> next ()
+                    {
+                        if (! hasNext ()) throw new NoSuchElementException ();
+                        var e = new AbstractMap.SimpleImmutableEntry <> (b.key[j], b.value[j]);
+                        j += 1;
+                        return e;
+                    } // next
+                }; // Iterator
+            } // iterator
+        }; // AbstractSet
     } // entrySet
 
+    /********************************************************************************
+     * Mix the bits of the key's hash code, so that keys with poorly distributed hash
+     * codes (e.g., multiples of the table size) still spread over the buckets.
+     * @param key  the key to hash
+     * @return  the mixed (non-negative) hash value
+     */
+    private static int mix (Object key)
+    {
+        var h = key.hashCode () * 0x9E3779B9;                                // Fibonacci hashing
+        return (h ^ (h >>> 16)) & 0x7FFFFFFF;
+    } // mix
+
     /********************************************************************************
      * Hash the key using the low resolution hash function.
      * @param key  the key to hash
      * @return  the location of the bucket chain containing the key-value pair
      */
-    private int h (Object key) { return key.hashCode () % mod1; }
+    private int h (Object key) { return mix (key) % mod1; }
 
     /********************************************************************************
      * Hash the key using the high resolution hash function.
      * @param key  the key to hash
      * @return  the location of the bucket chain containing the key-value pair
      */
-    private int h2 (Object key) { return key.hashCode () % mod2; }
+    private int h2 (Object key) { return mix (key) % mod2; }
+
+    /********************************************************************************
+     * Return the location of the bucket chain for the key, using the high resolution
+     * hash function for chains that have already been split in this phase.
+     * @param key  the key to hash
+     * @return  the location of the bucket chain containing the key-value pair
+     */
+    private int home (Object key)
+    {
+        var i = h (key);
+        return (i < isplit) ? h2 (key) : i;
+    } // home
 
     /********************************************************************************
      * Given the key, look up the value in the hash table.
@@ -180,11 +248,22 @@ public class LinHashMap <K, V>
     @SuppressWarnings("unchecked")
     public V get (Object key)
     {
-        var i = h (key);
-        // FIX for high resolution
-        return find ((K) key, hTable.get (i), true);
+        return find ((K) key, hTable.get (home (key)), true);
     } // get
 
+    /********************************************************************************
+     * Return whether the hash table contains the given key.
+     * @param key  the key to check
+     */
+    @SuppressWarnings("unchecked")
+    public boolean containsKey (Object key)
+    {
+        for (var b = hTable.get (home (key)); b != null; b = b.next) {
+            if (b.find ((K) key) >= 0) return true;
+        } // for
+        return false;
+    } // containsKey
+
     /********************************************************************************
      * Find the key in the bucket chain that starts with home bucket bh.
      * @param key     the key to find
@@ -196,8 +275,8 @@ public class LinHashMap <K, V>
     {
         for (var b = bh; b != null; b = b.next) {
             if (by_get) count += 1;
-            V result = b.find (key);
-            if (result != null) return result;
+            var j = b.find (key);
+            if (j >= 0) return b.value[j];
         } // for
         return null;
     } // find
@@ -215,42 +294,119 @@ public class LinHashMap <K, V>
      */
     public V put (K key, V value)
     {
-        var i    = h (key);                                                  // hash to i-th bucket chain
-        var bh   = hTable.get (i);                                           // start with home bucket
-        var oldV = find (key, bh, false);                                    // find old value associated with key
-        out.println (STR."LinearHashMap.put: key \{key}, h() = \{i}, value = \{value}");
+        var i  = home (key);                                                 // hash to i-th bucket chain
+        var bh = hTable.get (i);                                             // start with home bucket
+        Trace.log (Trace.Level.TRACE, () -> STR."LinHashMap.put: key \{key}, h() = \{i}, value = \{value}");
+
+        for (var b = bh; b != null; b = b.next) {                            // key present => replace its value
+            var j = b.find (key);
+            if (j >= 0) { var oldV = b.value[j]; b.value[j] = value; return oldV; }
+        } // for
 
+        append (bh, key, value);
         kCount += 1;                                                         // increment the key count
         var lf = loadFactor ();                                              // compute the load factor
-        if (DEBUG) out.println (STR."put: load factor = \{lf}");
+        Trace.log (Trace.Level.TRACE, () -> STR."LinHashMap.put: load factor = \{lf}");
         if (lf > THRESHOLD) split ();                                        // split beyond THRESHOLD
+        return null;
+    } // put
 
+    /********************************************************************************
+     * Add the key-value pair to the first bucket with a free slot in the chain
+     * starting with bh, adding a new overflow bucket at the end if all are full.
+     * @param bh     the home bucket of the chain
+     * @param key    the key to add
+     * @param value  the value to add
+     */
+    private void append (Bucket bh, K key, V value)
+    {
         var b = bh;
         while (true) {
-            if (b.keys < SLOTS) { b.add (key, value); return oldV; }
+            if (b.keys < slots) { b.add (key, value); return; }
             if (b.next != null) b = b.next; else break;
         } // while
 
         var bn = new Bucket ();
         bn.add (key, value);
         b.next = bn;                                                         // add new bucket at end of chain
-        return oldV;
-    } // put
+    } // append
 
     /********************************************************************************
      * Split bucket chain 'isplit' by creating a new bucket chain at the end of the
      * hash table and redistributing the keys according to the high resolution hash
      * function 'h2'.  Increment 'isplit'.  If current split phase is complete,
-     * reset 'isplit' to zero, and update the hash functions.
+     * reset 'isplit' to zero, and update the hash functions.  Redistributing rebuilds
+     * both chains densely, which also compacts away sparse overflow buckets.
      */
     private void split ()
     {
-        out.println ("split: bucket chain " + isplit);
+        Trace.log (Trace.Level.TRACE, () -> STR."LinHashMap.split: bucket chain \{isplit}");
 
-        //  T O   B E   I M P L E M E N T E D
+        var old = hTable.get (isplit);
+        var lo  = new Bucket ();                                             // replaces chain isplit
+        var hi  = new Bucket ();                                             // new chain at mod1 + isplit
+        hTable.set (isplit, lo);
+        hTable.add (hi);
+
+        for (var b = old; b != null; b = b.next) {
+            for (var j = 0; j < b.keys; j++) {
+                append ((h2 (b.key[j]) == isplit) ? lo : hi, b.key[j], b.value[j]);
+            } // for
+        } // for
 
+        if (++isplit == mod1) {                                              // split phase complete
+            isplit = 0;
+            mod1   = mod2;
+            mod2   = 2 * mod1;
+        } // if
     } // split
 
+//-----------------------------------------------------------------------------------
+// Remove key-value pairs from the Linear Hash Map
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table.  The hole is filled with
+     * the last pair in the chain, and an overflow bucket left empty is unlinked, so
+     * chains stay compact.
+     * @param key  the key to remove
+     * @return  the value that was removed, null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove (Object key)
+    {
+        var bh = hTable.get (home (key));
+        for (var b = bh; b != null; b = b.next) {
+            var j = b.find ((K) key);
+            if (j < 0) continue;
+
+            var oldV = b.value[j];
+            Bucket prev = null, last = bh;                                   // find the last bucket of the chain
+            while (last.next != null) { prev = last; last = last.next; }
+            var k = last.keys - 1;
+            b.key[j]   = last.key[k];   b.value[j] = last.value[k];          // move the last pair into the hole
+            last.key[k] = null;         last.value[k] = null;
+            last.keys  -= 1;
+            if (last.keys == 0 && prev != null) prev.next = null;           // drop an empty overflow bucket
+            kCount -= 1;
+            return oldV;
+        } // for
+        return null;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the key-value pairs from the hash table.
+     */
+    public void clear ()
+    {
+        hTable.clear ();
+        mod1   = 4;
+        mod2   = 2 * mod1;
+        isplit = 0;
+        kCount = 0;
+        for (var i = 0; i < mod1; i++) hTable.add (new Bucket ());
+    } // clear
+
 //-----------------------------------------------------------------------------------
 // Print/show the Linear Hash Map
 //-----------------------------------------------------------------------------------
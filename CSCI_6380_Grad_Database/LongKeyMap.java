@@ -0,0 +1,344 @@
+
+/************************************************************************************
+ * @file LongKeyMap.java
+ *
+ * @author  John Miller
+ *
+ * compile javac --enable-preview --release 21 LongKeyMap.java
+ * run     java --enable-preview LongKeyMap
+ */
+
+import java.io.*;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * The `LongKeyMap` class provides an index for tables whose primary key is a single
+ * integer-typed attribute (Long, Integer, Short, Byte or Character).  The key values
+ * are kept as primitive longs in an open-addressing (linear probing) hash table that
+ * maps each key to the position of its tuple in the table's list of tuples, so no
+ * KeyType, Comparable [] or boxed value is stored per entry.  It is exposed as a
+ * Map from KeyType to tuple so it can be looked up like the other index maps, while the
+ * 'getPos'/'putPos' methods give direct primitive access.  Since an entry holds the
+ * tuple's position, keys are added only by 'putPos' (the Map's put is unsupported).
+ */
+public class LongKeyMap
+       extends AbstractMap <KeyType, Comparable []>
+       implements Serializable
+{
+    /** The maximum fraction of occupied slots before the table is doubled
+     */
+    private static final double LOAD = 0.5;
+
+    /** Marker for an empty slot (no tuple position)
+     */
+    private static final int EMPTY = -1;
+
+    /** The table's list of tuples (positions index into this list)
+     */
+    private final List <Comparable []> tuples;
+
+    /** The domain of the key attribute (used to rebuild keys for the entry set)
+     */
+    private final Class keyClass;
+
+    /** The key values stored in the slots
+     */
+    private long [] keys;
+
+    /** The tuple position for each slot, EMPTY if the slot is free
+     */
+    private int [] pos;
+
+    /** The number of bits used to address the slots (capacity = 2^bits)
+     */
+    private int bits;
+
+    /** The number of keys in the map
+     */
+    private int kCount = 0;
+
+    /********************************************************************************
+     * Construct an empty primitive-key index over the given list of tuples.
+     * @param _tuples    the table's list of tuples
+     * @param _keyClass  the domain of the key attribute
+     */
+    public LongKeyMap (List <Comparable []> _tuples, Class _keyClass)
+    {
+        tuples   = _tuples;
+        keyClass = _keyClass;
+        allocate (4);
+    } // constructor
+
+    /********************************************************************************
+     * Return whether a key with the given domains can be stored in a LongKeyMap,
+     * i.e., the key is a single attribute with an integer type.
+     * @param keyDomain  the domains of the key attributes
+     */
+    public static boolean supports (Class [] keyDomain)
+    {
+        if (keyDomain.length != 1) return false;
+        var c = keyDomain [0];
+        return c == Long.class || c == Integer.class || c == Short.class || c == Byte.class || c == Character.class;
+    } // supports
+
+    /********************************************************************************
+     * Return the domain of the key attribute.
+     */
+    public Class keyClass () { return keyClass; }
+
+    /********************************************************************************
+     * Return the long for a key (KeyType) made of one value of the key attribute's
+     * domain, or null if the key is not of this form (and so, as for KeyType equality,
+     * cannot be in the map).
+     * @param key  the key
+     */
+    private Long longKey (Object key)
+    {
+        if (! (key instanceof KeyType kt)) return null;
+        var kv = kt.getKey ();
+        return (kv.length == 1 && kv [0] != null && kv [0].getClass () == keyClass) ? KeyType.toLong (kv [0]) : null;
+    } // longKey
+
+    /********************************************************************************
+     * Convert a long back to a key value of the key attribute's domain.
+     * @param k  the long key
+     */
+    private Comparable fromLong (long k)
+    {
+        if (keyClass == Integer.class)   return (int) k;
+        if (keyClass == Short.class)     return (short) k;
+        if (keyClass == Byte.class)      return (byte) k;
+        if (keyClass == Character.class) return (char) k;
+        return k;
+    } // fromLong
+
+    /********************************************************************************
+     * Allocate empty slot arrays with 2^_bits slots.
+     */
+    private void allocate (int _bits)
+    {
+        bits = _bits;
+        keys = new long [1 << bits];
+        pos  = new int [1 << bits];
+        Arrays.fill (pos, EMPTY);
+    } // allocate
+
+    /********************************************************************************
+     * Return the home slot for key k (Fibonacci hashing on the top bits).
+     */
+    private int slot (long k)
+    {
+        return (int) ((k * 0x9E3779B97F4A7C15L) >>> (64 - bits));
+    } // slot
+
+    /********************************************************************************
+     * Return the slot holding key k, or the empty slot where it would go.
+     */
+    private int probe (long k)
+    {
+        var mask = (1 << bits) - 1;
+        var i    = slot (k);
+        while (pos [i] != EMPTY && keys [i] != k) i = (i + 1) & mask;
+        return i;
+    } // probe
+
+    /********************************************************************************
+     * Return the size (number of keys) in the map.
+     */
+    public int size () { return kCount; }
+
+//-----------------------------------------------------------------------------------
+// Primitive access
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Return the tuple position for key k, or -1 if the key is not present.
+     * @param k  the key to look up
+     */
+    public int getPos (long k)
+    {
+        return pos [probe (k)];
+    } // getPos
+
+    /********************************************************************************
+     * Return the tuple for key k, or null if the key is not present.
+     * @param k  the key to look up
+     */
+    public Comparable [] get (long k)
+    {
+        var p = pos [probe (k)];
+        return (p == EMPTY) ? null : tuples.get (p);
+    } // get
+
+    /********************************************************************************
+     * Map key k to tuple position p.
+     * @param k  the key
+     * @param p  the position of the tuple in the list of tuples
+     * @return  the previous position for the key, -1 if none
+     */
+    public int putPos (long k, int p)
+    {
+        var i   = probe (k);
+        var old = pos [i];
+        keys [i] = k;
+        pos [i]  = p;
+        if (old == EMPTY && ++kCount > LOAD * (1 << bits)) grow ();
+        return old;
+    } // putPos
+
+    /********************************************************************************
+     * Double the number of slots and re-insert all the keys.
+     */
+    private void grow ()
+    {
+        var oldKeys = keys;
+        var oldPos  = pos;
+        allocate (bits + 1);
+        for (var i = 0; i < oldPos.length; i++) {
+            if (oldPos [i] != EMPTY) {
+                var j = probe (oldKeys [i]);
+                keys [j] = oldKeys [i];
+                pos [j]  = oldPos [i];
+            } // if
+        } // for
+    } // grow
+
+    /********************************************************************************
+     * Remove key k, shifting later entries of its probe sequence back so that no
+     * tombstones are needed.
+     * @param k  the key to remove
+     * @return  the position that was removed, -1 if the key was not present
+     */
+    public int removePos (long k)
+    {
+        var mask = (1 << bits) - 1;
+        var i    = probe (k);
+        var old  = pos [i];
+        if (old == EMPTY) return EMPTY;
+        pos [i] = EMPTY;
+        kCount -= 1;
+        for (var j = (i + 1) & mask; pos [j] != EMPTY; j = (j + 1) & mask) {
+            var h = slot (keys [j]);                                  // move j back if its home is not in (i, j]
+            if (((j - h) & mask) >= ((j - i) & mask)) {
+                keys [i] = keys [j];
+                pos [i]  = pos [j];
+                pos [j]  = EMPTY;
+                i = j;
+            } // if
+        } // for
+        return old;
+    } // removePos
+
+//-----------------------------------------------------------------------------------
+// Map interface
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Given the key, look up the tuple in the index.  A key that is not a single value
+     * of the key attribute's domain is never found (e.g., it is not truncated to a long).
+     * @param key  the key (KeyType) used for look up
+     * @return  the tuple with the key or null if not found
+     */
+    public Comparable [] get (Object key)
+    {
+        var k = longKey (key);
+        return (k == null) ? null : get (k.longValue ());
+    } // get
+
+    /********************************************************************************
+     * Return whether the index contains the given key.
+     * @param key  the key (KeyType) to check
+     */
+    public boolean containsKey (Object key)
+    {
+        var k = longKey (key);
+        return k != null && getPos (k) != EMPTY;
+    } // containsKey
+
+    /********************************************************************************
+     * Remove the key from the index.
+     * @param key  the key (KeyType) to remove
+     * @return  the tuple for the key, null if none
+     */
+    public Comparable [] remove (Object key)
+    {
+        var k = longKey (key);
+        if (k == null) return null;
+        var old = removePos (k);
+        return (old == EMPTY) ? null : tuples.get (old);
+    } // remove
+
+    /********************************************************************************
+     * Remove all the keys from the index.
+     */
+    public void clear ()
+    {
+        allocate (4);
+        kCount = 0;
+    } // clear
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and tuples.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <KeyType, Comparable []>> entrySet ()
+    {
+        return new AbstractSet <Map.Entry <KeyType, Comparable []>> () {
+            public int size () { return kCount; }
+            public Iterator <Map.Entry <KeyType, Comparable []>> iterator ()
+            {
+                return new Iterator <> () {
+                    private int i = advance (0);
+
+                    private int advance (int j)
+                    {
+                        while (j < pos.length && pos [j] == EMPTY) j++;
+                        return j;
+                    } // advance
+
+                    public boolean hasNext () { return i < pos.length; }
+
+                    public Map.Entry <KeyType, Comparable []> next ()
+                    {
+                        if (i >= pos.length) throw new NoSuchElementException ();
+                        var e = new AbstractMap.SimpleImmutableEntry <> (new KeyType (fromLong (keys [i])),
+                                                                         tuples.get (pos [i]));
+                        i = advance (i + 1);
+                        return e;
+                    } // next
+                }; // Iterator
+            } // iterator
+        }; // AbstractSet
+    } // entrySet
+
+//-----------------------------------------------------------------------------------
+// Main method for running/testing the map
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * The main method used for testing.
+     * @param  the command-line arguments (args[0] gives number of keys to insert)
+     */
+    public static void main (String [] args)
+    {
+        var totalKeys = 40;
+        if (args.length == 1) totalKeys = Integer.valueOf (args[0]);
+
+        var tuples = new ArrayList <Comparable []> ();
+        var map    = new LongKeyMap (tuples, Integer.class);
+        for (var i = 1; i <= totalKeys; i += 2) {
+            tuples.add (new Comparable [] { i, i * i });
+            map.putPos (i, tuples.size () - 1);
+        } // for
+
+        for (var i = 0; i <= totalKeys; i++) {
+            var t = map.get (new KeyType (i));
+            out.println (STR."key = \{i}, value = \{(t == null) ? null : t [1]}");
+        } // for
+        out.println ("-------------------------------------------");
+        out.println (STR."number of keys = \{map.size ()}, slots = \{map.pos.length}");
+    } // main
+
+} // LongKeyMap
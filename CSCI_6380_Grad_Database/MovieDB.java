@@ -38,7 +38,7 @@ class MovieDB
                                                 "Integer String String Float", "certNo");
 
         var studio = new Table ("studio", "name address presNo",
-                                          "String String Integer", "name");
+                                          "String String Integer", "name", Table.MapType.HASH_MAP);
 
         var film0 = new Comparable [] { "Star_Wars", 1977, 124, "sciFi", "Fox", 12345 };
         var film1 = new Comparable [] { "Star_Wars_2", 1980, 124, "sciFi", "Fox", 12345 };
@@ -73,7 +73,7 @@ class MovieDB
         starsIn.insert (cast0);
         starsIn.print ();
 
-        var exec0 = new Comparable [] { 9999, "S_Spielberg", "Hollywood", 10000.00 };
+        var exec0 = new Comparable [] { 9999, "S_Spielberg", "Hollywood", 10000.00f };
         out.println ();
         movieExec.insert (exec0);
         movieExec.print ();
@@ -94,6 +94,7 @@ class MovieDB
         movieExec.save ();
         studio.save ();
 
+        movieStar.reindex (Table.MapType.TREE_MAP);
         movieStar.printIndex ();
 
         //--------------------- project: title year
@@ -115,12 +116,29 @@ class MovieDB
         var t_select2 = movie.select (t -> (Integer) t[movie.col("year")] < 1980);
         t_select2.print ();
 
+        //--------------------- select: condition string
+
+        out.println ();
+        var t_select3 = movie.select ("year < 1980 && studioName == 'Fox'");
+        t_select3.print ();
+
         //--------------------- indexed select: key
 
         out.println ();
         var t_iselect = movieStar.select (new KeyType ("Harrison_Ford"));
         t_iselect.print ();
 
+        //--------------------- secondary index: select and indexed join use it
+
+        out.println ();
+        movie.createIndex ("studioName", Table.MapType.HASH_MAP);
+        var t_sselect = movie.select ("studioName == Universal");
+        t_sselect.print ();
+
+        out.println ();
+        var t_ijoin = studio.i_join ("name", "studioName", movie);
+        t_ijoin.print ();
+
         //--------------------- union: movie UNION cinema
 
         out.println ();
@@ -139,12 +157,48 @@ class MovieDB
         var t_join = movie.join ("studioName", "name", studio);
         t_join.print ();
 
+        //--------------------- hash join: movie JOIN studio ON studioName = name
+
+        out.println ();
+        var t_hjoin = movie.h_join ("studioName", "name", studio);
+        t_hjoin.print ();
+
+        //--------------------- sort-merge join: movie JOIN studio ON studioName = name
+
+        out.println ();
+        var t_smjoin = movie.sm_join ("studioName", "name", studio);
+        t_smjoin.print ();
+
+        //--------------------- pipelined: select, join and project without intermediate tables
+
+        out.println ();
+        var t_pipe = movie.pipe ().select (t -> (Integer) t[movie.col("year")] < 1980)
+                                  .join ("studioName", "name", studio.pipe ())
+                                  .project ("title address")
+                                  .toTable ();
+        t_pipe.print ();
+
+        //--------------------- planned multi-way join: starsIn, movie, studio
+
+        out.println ();
+        out.println (movie.analyze ());
+        var t_plan = Planner.join (java.util.List.of (
+                         new Planner.JoinPred (starsIn, "movieTitle movieYear", movie, "title year"),
+                         new Planner.JoinPred (movie, "studioName", studio, "name")));
+        t_plan.print ();
+
         //--------------------- natural join: movie JOIN studio
 
         out.println ();
         var t_join2 = movie.join (cinema);
         t_join2.print ();
 
+        //--------------------- theta join: movie JOIN cinema ON year < year2
+
+        out.println ();
+        var t_join3 = movie.join ("year < year2", cinema);
+        t_join3.print ();
+
     } // main
 
 } // MovieDB class
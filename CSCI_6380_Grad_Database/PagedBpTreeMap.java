@@ -0,0 +1,539 @@
+
+/************************************************************************************
+ * @file PagedBpTreeMap.java
+ *
+ * @author  John Miller
+ *
+ * compile javac --enable-preview --release 21 PagedBpTreeMap.java
+ * run     java --enable-preview PagedBpTreeMap
+ *
+ * Page Layouts (all pages have the same fixed size)
+ * meta page 0: [ magic | pageSize | keySize | valSize | root | kCount ]
+ * leaf:        [ 1 | keys | next | k0 v0 | k1 v1 | ... ]
+ * internal:    [ 0 | keys | -- | r0 | k0 r1 | k1 r2 | ... ]
+ * Rules: same as BpTreeMap (SMALLEST RIGHT divider keys), except that a full node is
+ *        split before the new key is added, and removal does not merge underfull
+ *        leaves (their free slots are reused by later insertions)
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static java.lang.System.arraycopy;
+import static java.lang.System.out;
+
+/************************************************************************************
+ * The `PagedBpTreeMap` class provides disk-resident B+Tree maps.  Each node is a
+ * fixed-size page of a file, accessed through a `BufferPool`, so the map may be larger
+ * than memory and is persistent: reopening the file gives back the map without reading
+ * it all in.  Keys and values are stored in fixed-width slots using the given codecs.
+ * Serializing the map only flushes it and records the file it lives in.
+ */
+public class PagedBpTreeMap <K extends Comparable <K>, V>
+       extends AbstractMap <K, V>
+       implements Serializable, Closeable
+{
+    /** Default number of bytes per page
+     */
+    public static final int PAGE_SIZE = 4096;
+
+    /** Default number of frames in the buffer pool
+     */
+    public static final int FRAMES = 1024;
+
+    private static final int MAGIC      = 0x42505431;                 // "BPT1"
+    private static final int HDR        = 9;                          // isLeaf (1) + keys (4) + next (4)
+    private static final int META       = 0;                          // page number of the meta page
+    private static final int FIRST_LEAF = 1;                          // page number of the first (leftmost) leaf
+
+    private final String    path;                                     // path of the file holding the pages
+    private final Codec <K> kc;                                       // codec for keys
+    private final Codec <V> vc;                                       // codec for values
+    private final int       pageSize;                                 // number of bytes per page
+    private final int       frames;                                   // number of frames in the buffer pool
+    private final int       ks, vs;                                   // key and value sizes in bytes
+    private final int       maxLeaf;                                  // maximum number of keys in a leaf
+    private final int       maxInt;                                   // maximum number of keys in an internal node
+
+    private transient BufferPool pool;                                // buffer pool caching the pages
+    private transient int        root;                                // page number of the root
+    private transient int        kCount;                              // number of keys in the map
+    private transient V          prev;                                // previous value replaced by the last put
+
+    /** The result of splitting a node: the divider key and the new right sibling page
+     */
+    private record Split <K> (K dkey, int right) {}
+
+    /********************************************************************************
+     * Construct a paged B+Tree map with default page size and pool size.
+     * @param _path    the path of the file holding the pages
+     * @param _kc      the codec for keys
+     * @param _vc      the codec for values
+     * @param create   whether to start a new map (otherwise reopen an existing one)
+     */
+    public PagedBpTreeMap (String _path, Codec <K> _kc, Codec <V> _vc, boolean create)
+    {
+        this (_path, _kc, _vc, PAGE_SIZE, FRAMES, create);
+    } // constructor
+
+    /********************************************************************************
+     * Construct a paged B+Tree map.
+     * @param _path      the path of the file holding the pages
+     * @param _kc        the codec for keys
+     * @param _vc        the codec for values
+     * @param _pageSize  the number of bytes per page
+     * @param _frames    the number of frames in the buffer pool
+     * @param create     whether to start a new map (otherwise reopen an existing one)
+     */
+    public PagedBpTreeMap (String _path, Codec <K> _kc, Codec <V> _vc, int _pageSize, int _frames, boolean create)
+    {
+        path     = _path;
+        kc       = _kc;
+        vc       = _vc;
+        pageSize = _pageSize;
+        frames   = _frames;
+        ks       = kc.size ();
+        vs       = vc.size ();
+        maxLeaf  = (pageSize - HDR) / (ks + vs);
+        maxInt   = (pageSize - HDR - 4) / (ks + 4);
+        if (maxLeaf < 3 || maxInt < 3) {
+            throw new IllegalArgumentException (STR."PagedBpTreeMap: page size \{pageSize} too small for entries");
+        } // if
+        open (create);
+    } // constructor
+
+    /********************************************************************************
+     * Open the file through a new buffer pool, initializing it for a new map.
+     * @param create  whether to start a new map
+     */
+    private void open (boolean create)
+    {
+        pool = new BufferPool (path, pageSize, frames, create);
+        if (pool.pages () == 0) {
+            pool.allocate ();                                         // meta page
+            var leaf = pool.allocate ();                              // first leaf (empty root)
+            var b    = pool.pin (leaf);
+            b.put (0, (byte) 1); b.putInt (1, 0); b.putInt (5, -1);
+            pool.unpin (leaf, true);
+            root   = FIRST_LEAF;
+            kCount = 0;
+            writeMeta ();
+        } else {
+            var b = pool.pin (META);
+            if (b.getInt (0) != MAGIC || b.getInt (4) != pageSize || b.getInt (8) != ks || b.getInt (12) != vs) {
+                pool.unpin (META, false);
+                pool.close ();
+                throw new IllegalStateException (STR."PagedBpTreeMap: \{path} has an incompatible layout");
+            } // if
+            root   = b.getInt (16);
+            kCount = b.getInt (20);
+            pool.unpin (META, false);
+        } // if
+    } // open
+
+    /********************************************************************************
+     * Record the layout, the root and the key count in the meta page.
+     */
+    private void writeMeta ()
+    {
+        var b = pool.pin (META);
+        b.putInt (0, MAGIC); b.putInt (4, pageSize); b.putInt (8, ks); b.putInt (12, vs);
+        b.putInt (16, root); b.putInt (20, kCount);
+        pool.unpin (META, true);
+    } // writeMeta
+
+    /********************************************************************************
+     * Return the size (number of keys) in the B+Tree.
+     */
+    public synchronized int size () { return kCount; }
+
+    /********************************************************************************
+     * Return the number of page requests satisfied by the buffer pool.
+     */
+    public long pageHits () { return pool.hits (); }
+
+    /********************************************************************************
+     * Return the number of page requests that had to read the file.
+     */
+    public long pageMisses () { return pool.misses (); }
+
+//-----------------------------------------------------------------------------------
+// Accessing the slots of a page
+//-----------------------------------------------------------------------------------
+
+    private static boolean isLeaf (ByteBuffer b) { return b.get (0) == 1; }
+    private static int keys (ByteBuffer b) { return b.getInt (1); }
+    private static int next (ByteBuffer b) { return b.getInt (5); }
+
+    private int leafOff (int i) { return HDR + i * (ks + vs); }                 // offset of leaf key i (value follows)
+    private int keyOff (int i)  { return HDR + 4 + i * (ks + 4); }              // offset of internal key i
+    private int refOff (int i)  { return (i == 0) ? HDR : keyOff (i - 1) + ks; } // offset of internal ref i
+
+    /********************************************************************************
+     * Find the first position where 'k < key_i' in the given page.
+     */
+    private int find (ByteBuffer b, K k)
+    {
+        var leaf = isLeaf (b);
+        int lo = 0, hi = keys (b);
+        while (lo < hi) {
+            var mid = (lo + hi) >>> 1;
+            if (k.compareTo (kc.read (b, leaf ? leafOff (mid) : keyOff (mid))) < 0) hi = mid; else lo = mid + 1;
+        } // while
+        return lo;
+    } // find
+
+    /********************************************************************************
+     * Find the first position where 'k <= key_i' in the given LEAF page.
+     */
+    private int findGe (ByteBuffer b, K k)
+    {
+        int lo = 0, hi = keys (b);
+        while (lo < hi) {
+            var mid = (lo + hi) >>> 1;
+            if (kc.read (b, leafOff (mid)).compareTo (k) < 0) lo = mid + 1; else hi = mid;
+        } // while
+        return lo;
+    } // findGe
+
+    /********************************************************************************
+     * Move len bytes within page b from offset from to offset to.
+     */
+    private static void move (ByteBuffer b, int from, int to, int len)
+    {
+        arraycopy (b.array (), from, b.array (), to, len);
+    } // move
+
+    /********************************************************************************
+     * Descend from the root to the leaf page that would hold key k.
+     */
+    private int leafFor (K k)
+    {
+        var page = root;
+        while (true) {
+            var b = pool.pin (page);
+            if (isLeaf (b)) { pool.unpin (page, false); return page; }
+            var child = b.getInt (refOff (find (b, k)));
+            pool.unpin (page, false);
+            page = child;
+        } // while
+    } // leafFor
+
+//-----------------------------------------------------------------------------------
+// Retrieve values
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Given the key, look up the value in the B+Tree map.
+     * @param key  the key used for look up
+     * @return  the value associated with the key or null if not found
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V get (Object key)
+    {
+        var k    = (K) key;
+        var leaf = leafFor (k);
+        var b    = pool.pin (leaf);
+        try {
+            var p = findGe (b, k);
+            return (p < keys (b) && kc.read (b, leafOff (p)).compareTo (k) == 0) ? vc.read (b, leafOff (p) + ks) : null;
+        } finally {
+            pool.unpin (leaf, false);
+        } // try
+    } // get
+
+    /********************************************************************************
+     * Return a set containing all the entries as pairs of keys and values, delivered
+     * in key order by walking the linked leaf pages.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        return new AbstractSet <Map.Entry <K, V>> () {
+            public Iterator <Map.Entry <K, V>> iterator () { return scan (null, null); }
+            public int size () { return PagedBpTreeMap.this.size (); }
+        }; // AbstractSet
+    } // entrySet
+
+    /********************************************************************************
+     * Return an iterator over the entries with keys in [lo, hi), in key order.
+     * One leaf page at a time is decoded, so no page stays pinned between calls.
+     * @param lo  the low end key (inclusive), null => unbounded
+     * @param hi  the high end key (exclusive), null => unbounded
+     */
+    public synchronized Iterator <Map.Entry <K, V>> scan (K lo, K hi)
+    {
+        var start = (lo == null) ? FIRST_LEAF : leafFor (lo);
+        return new Iterator <> () {
+            private final ArrayDeque <Map.Entry <K, V>> buf = new ArrayDeque <> ();
+            private int     page = start;                             // next leaf page to decode
+            private boolean done = false;
+
+            public boolean hasNext ()
+            {
+                while (buf.isEmpty () && ! done && page >= 0) fill ();
+                return ! buf.isEmpty ();
+            } // hasNext
+
+            public Map.Entry <K, V> next ()
+            {
+                if (! hasNext ()) throw new NoSuchElementException ();
+                return buf.poll ();
+            } // next
+
+            private void fill ()
+            {
+                synchronized (PagedBpTreeMap.this) {
+                    var b = pool.pin (page);
+                    for (var i = 0; i < keys (b); i++) {
+                        var k = kc.read (b, leafOff (i));
+                        if (lo != null && k.compareTo (lo) < 0) continue;
+                        if (hi != null && k.compareTo (hi) >= 0) { done = true; break; }
+                        buf.add (new AbstractMap.SimpleImmutableEntry <> (k, vc.read (b, leafOff (i) + ks)));
+                    } // for
+                    var nxt = PagedBpTreeMap.next (b);
+                    pool.unpin (page, false);
+                    page = nxt;
+                } // synchronized
+            } // fill
+        }; // Iterator
+    } // scan
+
+//-----------------------------------------------------------------------------------
+// Put key-value pairs into the B+Tree
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Put the key-value pair in the B+Tree map.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value for this key, null if none
+     */
+    public synchronized V put (K key, V value)
+    {
+        prev  = null;
+        var s = insert (root, key, value);
+        if (s != null) {                                              // root split => make a new root
+            var nr = pool.allocate ();
+            var b  = pool.pin (nr);
+            b.put (0, (byte) 0); b.putInt (1, 1); b.putInt (5, -1);
+            b.putInt (refOff (0), root);
+            kc.write (b, keyOff (0), s.dkey);
+            b.putInt (refOff (1), s.right);
+            pool.unpin (nr, true);
+            root = nr;
+        } // if
+        return prev;
+    } // put
+
+    /********************************************************************************
+     * Recursive helper function for inserting a key into the subtree rooted at page.
+     * @param page   the page number of the current node
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the split (divider key and right sibling) if the node split, else null
+     */
+    private Split <K> insert (int page, K key, V value)
+    {
+        var b = pool.pin (page);
+
+        if (isLeaf (b)) {                                             // handle LEAF node level
+            var n = keys (b);
+            var p = findGe (b, key);
+            if (p < n && kc.read (b, leafOff (p)).compareTo (key) == 0) {
+                prev = vc.read (b, leafOff (p) + ks);                 // key present => replace its value
+                vc.write (b, leafOff (p) + ks, value);
+                pool.unpin (page, true);
+                return null;
+            } // if
+            kCount += 1;
+            if (n < maxLeaf) {
+                addLeaf (b, p, key, value);
+                pool.unpin (page, true);
+                return null;
+            } // if
+
+            var r   = pool.allocate ();                               // full => split before adding
+            var rb  = pool.pin (r);
+            var mid = n / 2;
+            move2 (b, leafOff (mid), rb, leafOff (0), (n - mid) * (ks + vs));
+            rb.put (0, (byte) 1); rb.putInt (1, n - mid); rb.putInt (5, next (b));
+            b.putInt (1, mid); b.putInt (5, r);                       // this -> r -> old-right
+            if (p <= mid) addLeaf (b, p, key, value); else addLeaf (rb, p - mid, key, value);
+            var dkey = kc.read (rb, leafOff (0));
+            pool.unpin (r, true);
+            pool.unpin (page, true);
+            return new Split <> (dkey, r);
+        } // if
+
+        var i     = find (b, key);                                    // handle INTERNAL node level
+        var child = b.getInt (refOff (i));
+        pool.unpin (page, false);
+        var s = insert (child, key, value);
+        if (s == null) return null;
+
+        b = pool.pin (page);
+        var n = keys (b);
+        if (n < maxInt) {                                             // room for the divider key
+            move (b, keyOff (i), keyOff (i + 1), (n - i) * (ks + 4));
+            kc.write (b, keyOff (i), s.dkey);
+            b.putInt (refOff (i + 1), s.right);
+            b.putInt (1, n + 1);
+            pool.unpin (page, true);
+            return null;
+        } // if
+
+        var keyL = new ArrayList <K> (n + 1);                         // full => split internal node
+        var refL = new ArrayList <Integer> (n + 2);
+        for (var j = 0; j < n; j++) keyL.add (kc.read (b, keyOff (j)));
+        for (var j = 0; j <= n; j++) refL.add (b.getInt (refOff (j)));
+        keyL.add (i, s.dkey);
+        refL.add (i + 1, s.right);
+        var mid = (n + 1) / 2;                                        // promote the middle key
+        var r   = pool.allocate ();
+        var rb  = pool.pin (r);
+        writeInternal (b, keyL.subList (0, mid), refL.subList (0, mid + 1));
+        writeInternal (rb, keyL.subList (mid + 1, n + 1), refL.subList (mid + 1, n + 2));
+        pool.unpin (r, true);
+        pool.unpin (page, true);
+        return new Split <> (keyL.get (mid), r);
+    } // insert
+
+    /********************************************************************************
+     * Add key k and value v at position p of the LEAF page b (which has room).
+     */
+    private void addLeaf (ByteBuffer b, int p, K k, V v)
+    {
+        var n = keys (b);
+        move (b, leafOff (p), leafOff (p + 1), (n - p) * (ks + vs));
+        kc.write (b, leafOff (p), k);
+        vc.write (b, leafOff (p) + ks, v);
+        b.putInt (1, n + 1);
+    } // addLeaf
+
+    /********************************************************************************
+     * Write the given keys and references into INTERNAL page b.
+     */
+    private void writeInternal (ByteBuffer b, List <K> keyL, List <Integer> refL)
+    {
+        b.put (0, (byte) 0); b.putInt (1, keyL.size ()); b.putInt (5, -1);
+        for (var j = 0; j < keyL.size (); j++) kc.write (b, keyOff (j), keyL.get (j));
+        for (var j = 0; j < refL.size (); j++) b.putInt (refOff (j), refL.get (j));
+    } // writeInternal
+
+    /********************************************************************************
+     * Copy len bytes from page b (offset from) to page c (offset to).
+     */
+    private static void move2 (ByteBuffer b, int from, ByteBuffer c, int to, int len)
+    {
+        arraycopy (b.array (), from, c.array (), to, len);
+    } // move2
+
+//-----------------------------------------------------------------------------------
+// Remove key-value pairs from the B+Tree
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Remove the given key (and its value) from the B+Tree map.  The leaf is not
+     * merged with its siblings, so it may be left underfull.
+     * @param key  the key to remove
+     * @return  the value that was removed, null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove (Object key)
+    {
+        var k    = (K) key;
+        var leaf = leafFor (k);
+        var b    = pool.pin (leaf);
+        var n    = keys (b);
+        var p    = findGe (b, k);
+        if (p >= n || kc.read (b, leafOff (p)).compareTo (k) != 0) {
+            pool.unpin (leaf, false);
+            return null;
+        } // if
+        var oldV = vc.read (b, leafOff (p) + ks);
+        move (b, leafOff (p + 1), leafOff (p), (n - p - 1) * (ks + vs));
+        b.putInt (1, n - 1);
+        pool.unpin (leaf, true);
+        kCount -= 1;
+        return oldV;
+    } // remove
+
+//-----------------------------------------------------------------------------------
+// Persistence
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Write the meta data and all dirty pages back to the file.
+     */
+    public synchronized void flush ()
+    {
+        writeMeta ();
+        pool.flush ();
+    } // flush
+
+    /********************************************************************************
+     * Flush the map and close its file.
+     */
+    public synchronized void close ()
+    {
+        writeMeta ();
+        pool.close ();
+    } // close
+
+    /********************************************************************************
+     * Flush the map before serializing (only the file path and layout are written).
+     */
+    private void writeObject (ObjectOutputStream oos) throws IOException
+    {
+        flush ();
+        oos.defaultWriteObject ();
+    } // writeObject
+
+    /********************************************************************************
+     * Reopen the file after deserializing.
+     */
+    private void readObject (ObjectInputStream ois) throws IOException, ClassNotFoundException
+    {
+        ois.defaultReadObject ();
+        open (false);
+    } // readObject
+
+//-----------------------------------------------------------------------------------
+// Main method for running/testing the paged B+Tree
+//-----------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * The main method used for testing.  Builds a map, closes it, reopens it and
+     * checks its contents.
+     * @param  the command-line arguments (args[0] gives number of keys to insert)
+     */
+    public static void main (String [] args)
+    {
+        var totalKeys = 100000;
+        var file      = "store" + File.separator + "paged_test.idx";
+        if (args.length == 1) totalKeys = Integer.valueOf (args[0]);
+
+        var icodec = RecordCodec.forValues (Integer.class);
+        var bpt    = new PagedBpTreeMap <Integer, Integer> (file, icodec, icodec, 4096, 64, true);
+        var rng    = new Random (0);
+        for (var i = 0; i < totalKeys; i++) bpt.put (rng.nextInt (4 * totalKeys), i);
+        out.println (STR."size after puts = \{bpt.size ()}");
+        bpt.close ();
+
+        bpt = new PagedBpTreeMap <> (file, icodec, icodec, 4096, 64, false);
+        rng = new Random (0);
+        var found = 0;
+        for (var i = 0; i < totalKeys; i++) if (bpt.get (rng.nextInt (4 * totalKeys)) != null) found++;
+        out.println ("-------------------------------------------");
+        out.println (STR."size after reopen = \{bpt.size ()}, keys found = \{found}");
+        out.println (STR."page hits = \{bpt.pageHits ()}, page misses = \{bpt.pageMisses ()}");
+        out.println ("-------------------------------------------");
+        var it = bpt.scan (100, 200);
+        while (it.hasNext ()) out.print (it.next () + " ");
+        out.println ();
+        bpt.close ();
+    } // main
+
+} // PagedBpTreeMap
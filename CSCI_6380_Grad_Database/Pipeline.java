@@ -0,0 +1,390 @@
+
+/****************************************************************************************
+ * @file  Pipeline.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * The Pipeline class provides lazy (Volcano-style) execution of relational algebra
+ * operators.  A pipeline is a plan: each operator returns a new pipeline that wraps its
+ * input, and nothing is evaluated until the tuples are pulled through 'iterator' or
+ * materialized by 'toTable'.  Tuples then flow one at a time from the base table through
+ * the chain of operators, so no intermediate tables are built.  Only the blocking side
+ * of an operator (the build side of a join, the rhs of a minus, the seen tuples of a
+ * union) is held in memory, and it is built when the pipeline is executed.  A sort-merge
+ * join instead sorts both inputs externally (see ExternalSort), holding a bounded number
+ * of tuples in memory.
+ *
+ * #usage movie.pipe ().select (t -> t[movie.col("year")].equals (1977)).project ("title").toTable ()
+ */
+public class Pipeline
+       implements Iterable <Comparable []>
+{
+    /** Counter for naming materialized tables.
+     */
+    private static int count = 0;
+
+    /** The name of the base table (used for naming the result).
+     */
+    private final String name;
+
+    /** Array of attribute names of the tuples delivered.
+     */
+    private final String [] attribute;
+
+    /** Array of attribute domains of the tuples delivered.
+     */
+    private final Class [] domain;
+
+    /** Primary key of the tuples delivered.
+     */
+    private final String [] key;
+
+    /** Produces a fresh (lazy) stream of the tuples each time the pipeline is executed.
+     */
+    private final Supplier <Stream <Comparable []>> source;
+
+    /************************************************************************************
+     * Construct a pipeline delivering the tuples produced by source.
+     *
+     * @param _name       the name of the base table
+     * @param _attribute  the attribute names
+     * @param _domain     the attribute domains
+     * @param _key        the primary key
+     * @param _source     produces the stream of tuples
+     */
+    Pipeline (String _name, String [] _attribute, Class [] _domain, String [] _key,
+              Supplier <Stream <Comparable []>> _source)
+    {
+        name      = _name;
+        attribute = _attribute;
+        domain    = _domain;
+        key       = _key;
+        source    = _source;
+    } // constructor
+
+    /************************************************************************************
+     * Select the tuples satisfying the given predicate.
+     *
+     * @param predicate  the check condition for tuples
+     * @return  a pipeline delivering the tuples satisfying the predicate
+     */
+    public Pipeline select (Predicate <Comparable []> predicate)
+    {
+        Trace.info (() -> STR."RA> \{name}.select (\{predicate}) [pipelined]");
+
+        return new Pipeline (name, attribute, domain, key, () -> source.get ().filter (predicate));
+    } // select
+
+    /************************************************************************************
+     * Project the tuples onto the given attributes, eliminating duplicate tuples when
+     * the key is not kept (as Table.project does).
+     *
+     * @param attributes  the attributes to project onto
+     * @return  a pipeline delivering the projected tuples
+     */
+    public Pipeline project (String attributes)
+    {
+        Trace.info (() -> STR."RA> \{name}.project (\{attributes}) [pipelined]");
+
+        var attrs  = attributes.split (" ");
+        var cols   = match (attrs);
+        var newKey = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
+        var newDom = new Class [cols.length];
+        for (var j = 0; j < cols.length; j++) newDom [j] = domain [cols [j]];
+
+        if (newKey == key) {
+            return new Pipeline (name, attrs, newDom, newKey,
+                                 () -> source.get ().map (t -> Table.project (t, cols)));
+        } // if
+        return new Pipeline (name, attrs, newDom, newKey, () -> {
+            var seen = new HashSet <KeyType> ();
+            return source.get ().map (t -> Table.project (t, cols)).filter (t -> seen.add (new KeyType (t)));
+        });
+    } // project
+
+    /************************************************************************************
+     * Union this pipeline and p2, eliminating duplicate tuples.
+     *
+     * @param p2  the rhs pipeline in the union operation
+     * @return  a pipeline delivering the tuples in either input
+     */
+    public Pipeline union (Pipeline p2)
+    {
+        Trace.info (() -> STR."RA> \{name}.union (\{p2.name}) [pipelined]");
+        if (! compatible (p2)) return null;
+
+        return new Pipeline (name, attribute, domain, key, () -> {
+            var seen = new HashSet <KeyType> ();
+            return Stream.concat (source.get (), p2.source.get ()).filter (t -> seen.add (new KeyType (t)));
+        });
+    } // union
+
+    /************************************************************************************
+     * Take the difference of this pipeline and p2 (p2 is hashed when executed).
+     *
+     * @param p2  the rhs pipeline in the minus operation
+     * @return  a pipeline delivering the tuples in this pipeline that are not in p2
+     */
+    public Pipeline minus (Pipeline p2)
+    {
+        Trace.info (() -> STR."RA> \{name}.minus (\{p2.name}) [pipelined]");
+        if (! compatible (p2)) return null;
+
+        return new Pipeline (name, attribute, domain, key, () -> {
+            HashSet <KeyType> rhs;
+            try (var s = p2.source.get ()) {
+                rhs = s.map (KeyType::new).collect (Collectors.toCollection (HashSet::new));
+            } // try
+            return source.get ().filter (t -> ! rhs.contains (new KeyType (t)));
+        });
+    } // minus
+
+    /************************************************************************************
+     * Equi-join this pipeline and p2 using a hash join: p2 (typically the referenced,
+     * smaller input) is hashed on its join attributes when the pipeline is executed and
+     * the tuples of this pipeline are streamed through as probes.
+     *
+     * #usage movie.pipe ().join ("studioName", "name", studio.pipe ())
+     *
+     * @param attributes1  the attributes of this pipeline to be compared (Foreign Key)
+     * @param attributes2  the attributes of p2 to be compared (Primary Key)
+     * @param p2           the rhs pipeline in the join operation (build side)
+     * @return  a pipeline delivering the joined tuples
+     */
+    public Pipeline join (String attributes1, String attributes2, Pipeline p2)
+    {
+        Trace.info (() -> STR."RA> \{name}.join (\{attributes1}, \{attributes2}, \{p2.name}) [pipelined]");
+
+        var t_cols = match (attributes1.split (" "));
+        var u_cols = p2.match (attributes2.split (" "));
+
+        return new Pipeline (name, Table.disambiguate (attribute, p2.attribute),
+                             Table.concat (domain, p2.domain), key, () -> {
+            var hTable = new HashMap <KeyType, List <Comparable []>> ();
+            try (var build = p2.source.get ()) {
+                build.forEach (u -> hTable.computeIfAbsent (new KeyType (Table.project (u, u_cols)),
+                                                            k -> new ArrayList <> (1)).add (u));
+            } // try
+            return source.get ().flatMap (t -> {
+                var matches = hTable.get (new KeyType (Table.project (t, t_cols)));
+                return (matches == null) ? Stream.empty () : matches.stream ().map (u -> Table.concat (t, u));
+            });
+        });
+    } // join
+
+    /************************************************************************************
+     * Equi-join this pipeline and p2 using a sort-merge join: when the pipeline is
+     * executed, both inputs are sorted on their join attributes, holding at most 'runSize'
+     * tuples of either in memory (see ExternalSort), and then merged, buffering only the
+     * tuples of p2 sharing the current join key.  The joined tuples are delivered as
+     * they are found.  The sorted runs are released when the tuples have all been pulled
+     * or the stream is closed (as toTable does).
+     *
+     * #usage movie.pipe ().sm_join ("studioName", "name", studio.pipe (), ExternalSort.RUN_SIZE)
+     *
+     * @param attributes1  the attributes of this pipeline to be compared (Foreign Key)
+     * @param attributes2  the attributes of p2 to be compared (Primary Key)
+     * @param p2           the rhs pipeline in the join operation
+     * @param runSize      the maximum number of tuples per in-memory sorted run
+     * @return  a pipeline delivering the joined tuples
+     */
+    public Pipeline sm_join (String attributes1, String attributes2, Pipeline p2, int runSize)
+    {
+        Trace.info (() -> STR."RA> \{name}.sm_join (\{attributes1}, \{attributes2}, \{p2.name}) [pipelined]");
+
+        var t_cols = match (attributes1.split (" "));
+        var u_cols = p2.match (attributes2.split (" "));
+
+        return new Pipeline (name, Table.disambiguate (attribute, p2.attribute),
+                             Table.concat (domain, p2.domain), key, () -> {
+            var lhs = source.get ();
+            var rhs = p2.source.get ();
+            return mergeJoin (lhs.iterator (), t_cols, rhs.iterator (), u_cols, runSize).onClose (lhs::close)
+                                                                                      .onClose (rhs::close);
+        });
+    } // sm_join
+
+    /************************************************************************************
+     * Sort the lhs and rhs tuples on their join attributes and return a stream of the
+     * tuples formed by merging them (see MergeJoin).  Closing the stream deletes any
+     * sorted runs not yet read.
+     *
+     * @param lhs      the lhs tuples
+     * @param t_cols   the positions of the join attributes in the lhs tuples
+     * @param rhs      the rhs tuples
+     * @param u_cols   the positions of the join attributes in the rhs tuples
+     * @param runSize  the maximum number of tuples per in-memory sorted run
+     * @return  the stream of joined tuples
+     */
+    static Stream <Comparable []> mergeJoin (Iterator <Comparable []> lhs, int [] t_cols,
+                                             Iterator <Comparable []> rhs, int [] u_cols, int runSize)
+    {
+        var tIt = ExternalSort.sort (lhs, (a, b) -> Table.compareOn (a, t_cols, b, t_cols), runSize);
+        ExternalSort.Sorted uIt;
+        try {
+            uIt = ExternalSort.sort (rhs, (a, b) -> Table.compareOn (a, u_cols, b, u_cols), runSize);
+        } catch (RuntimeException ex) {
+            tIt.close ();
+            throw ex;
+        } // try
+        var mj = new MergeJoin (tIt, t_cols, uIt, u_cols);
+        return StreamSupport.stream (Spliterators.spliteratorUnknownSize (mj, Spliterator.ORDERED | Spliterator.NONNULL),
+                                     false).onClose (mj::close);
+    } // mergeJoin
+
+    /************************************************************************************
+     * Stop after delivering at most n tuples.
+     *
+     * @param n  the maximum number of tuples
+     * @return  a pipeline delivering the first n tuples
+     */
+    public Pipeline limit (int n)
+    {
+        return new Pipeline (name, attribute, domain, key, () -> source.get ().limit (n));
+    } // limit
+
+    /************************************************************************************
+     * Execute the pipeline, returning an iterator that pulls the tuples through it.
+     */
+    public Iterator <Comparable []> iterator ()
+    {
+        return source.get ().iterator ();
+    } // iterator
+
+    /************************************************************************************
+     * Execute the pipeline, materializing its tuples in a new table.
+     *
+     * @return  a table holding the result
+     */
+    public Table toTable ()
+    {
+        var span = Trace.begin (() -> STR."RA> \{name}.toTable () [pipelined]");
+        List <Comparable []> rows;
+        try (var s = source.get ()) {                                   // closing releases sorted runs
+            rows = s.collect (Collectors.toCollection (ArrayList::new));
+        } // try
+        return span.end (new Table (name + "_p" + count++, attribute, domain, key, rows));
+    } // toTable
+
+    /************************************************************************************
+     * Return the column positions of the given attribute names.
+     *
+     * @param column  the array of attribute names
+     */
+    private int [] match (String [] column)
+    {
+        var colPos = new int [column.length];
+        for (var j = 0; j < column.length; j++) {
+            colPos [j] = Arrays.asList (attribute).indexOf (column [j]);
+            if (colPos [j] < 0) throw new IllegalArgumentException (STR."match: attribute not found for \{column [j]}");
+        } // for
+        return colPos;
+    } // match
+
+    /************************************************************************************
+     * Determine whether the tuples of this pipeline and p2 are compatible, i.e., have
+     * the same number of attributes each with the same corresponding domain.
+     *
+     * @param p2  the rhs pipeline
+     */
+    private boolean compatible (Pipeline p2)
+    {
+        if (! Arrays.equals (domain, p2.domain)) {
+            out.println ("compatible ERROR: pipelines have different domains");
+            return false;
+        } // if
+        return true;
+    } // compatible
+
+//-----------------------------------------------------------------------------------
+// MergeJoin inner class
+//-----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * The MergeJoin inner class merges two inputs sorted on their join attributes,
+     * delivering one joined tuple at a time.  Only the group of rhs tuples sharing the
+     * current join key is buffered; each lhs tuple with that key is joined with the whole
+     * group.  The sorted inputs are closed once both are read to the end or on close.
+     */
+    private static class MergeJoin
+            implements Iterator <Comparable []>
+    {
+        private final ExternalSort.Sorted tIt;                          // sorted lhs tuples
+        private final ExternalSort.Sorted uIt;                          // sorted rhs tuples
+        private final int [] t_cols;                                    // lhs join attribute positions
+        private final int [] u_cols;                                    // rhs join attribute positions
+        private final ArrayList <Comparable []> group = new ArrayList <> ();  // rhs tuples with the current key
+        private Comparable [] t;                                        // current lhs tuple
+        private Comparable [] u;                                        // first rhs tuple after the group
+        private Comparable [] next;                                     // next joined tuple (null => none)
+        private int gi = 0;                                             // position in the group for t
+
+        MergeJoin (ExternalSort.Sorted _tIt, int [] _t_cols, ExternalSort.Sorted _uIt, int [] _u_cols)
+        {
+            tIt    = _tIt;
+            uIt    = _uIt;
+            t_cols = _t_cols;
+            u_cols = _u_cols;
+            t      = tIt.hasNext () ? tIt.next () : null;
+            u      = uIt.hasNext () ? uIt.next () : null;
+            next   = advance ();
+        } // constructor
+
+        /** Return the next joined tuple, or null when there are no more.
+         */
+        private Comparable [] advance ()
+        {
+            while (true) {
+                if (t != null && gi < group.size ()) return Table.concat (t, group.get (gi++));
+                if (! group.isEmpty ()) {                               // t is done with the group
+                    var first = group.get (0);
+                    t  = tIt.hasNext () ? tIt.next () : null;
+                    gi = 0;
+                    if (t != null && Table.compareOn (t, t_cols, first, u_cols) == 0) continue;
+                    group.clear ();
+                } // if
+                if (t == null || u == null) { close (); return null; }
+                var c = Table.compareOn (t, t_cols, u, u_cols);
+                if (c < 0) {
+                    t = tIt.hasNext () ? tIt.next () : null;
+                } else if (c > 0) {
+                    u = uIt.hasNext () ? uIt.next () : null;
+                } else {                                                // collect the rhs group
+                    var first = u;
+                    do {
+                        group.add (u);
+                        u = uIt.hasNext () ? uIt.next () : null;
+                    } while (u != null && Table.compareOn (first, u_cols, u, u_cols) == 0);
+                } // if
+            } // while
+        } // advance
+
+        public boolean hasNext () { return next != null; }
+
+        public Comparable [] next ()
+        {
+            if (next == null) throw new NoSuchElementException ();
+            var tup = next;
+            next = advance ();
+            return tup;
+        } // next
+
+        /** Close both sorted inputs, deleting any runs not yet read.
+         */
+        void close ()
+        {
+            tIt.close ();
+            uIt.close ();
+        } // close
+
+    } // MergeJoin
+
+} // Pipeline
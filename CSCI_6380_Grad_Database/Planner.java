@@ -0,0 +1,212 @@
+
+/****************************************************************************************
+ * @file  Planner.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * The Planner class picks how to evaluate equi-joins using table statistics (see
+ * Statistics and Table.analyze).  For a single join it estimates the cost of each join
+ * algorithm (nested loop, indexed, hash and sort-merge) from the table sizes and the
+ * available indices, and runs the cheapest.  For a multi-way join it orders the joins
+ * greedily: it starts with the join estimated to produce the fewest rows and then keeps
+ * adding the connected table that keeps the intermediate result smallest, so the result
+ * does not depend on the order in which the query was written.  (Index use for selections
+ * is decided in Table.select (String), which consults the statistics for range lookups.)
+ *
+ * #usage Planner.join (List.of (new Planner.JoinPred (movie, "studioName", studio, "name"),
+ *                               new Planner.JoinPred (studio, "presNo", movieExec, "certNo")))
+ */
+public class Planner
+{
+    /** The join algorithms.
+     */
+    public enum JoinMethod { NESTED_LOOP, INDEXED, HASH, SORT_MERGE }
+
+    /** The maximum number of tuples in the build side of a hash join (beyond this the
+     *  hash table is not expected to fit in memory).
+     */
+    private static final long MEM_LIMIT = 1 << 22;
+
+    /** The relative cost of an index probe and of inserting into a hash table (the cost
+     *  of reading a tuple is 1).
+     */
+    private static final double PROBE = 2.0, BUILD = 2.0;
+
+    /************************************************************************************
+     * An equi-join predicate: left.attributes1 == right.attributes2.
+     * @param left         the lhs table
+     * @param attributes1  the attributes of the lhs table
+     * @param right        the rhs table
+     * @param attributes2  the attributes of the rhs table
+     */
+    public record JoinPred (Table left, String attributes1, Table right, String attributes2) {}
+
+    /************************************************************************************
+     * Choose the cheapest algorithm for joining table1 and table2 on the given attributes.
+     *
+     * @param table1       the lhs table
+     * @param attributes1  the attributes of table1 to be compared
+     * @param table2       the rhs table
+     * @param attributes2  the attributes of table2 to be compared
+     * @return  the join algorithm to use
+     */
+    public static JoinMethod chooseJoin (Table table1, String attributes1, Table table2, String attributes2)
+    {
+        double n1 = table1.rows (), n2 = table2.rows ();
+
+        var cost = new EnumMap <JoinMethod, Double> (JoinMethod.class);
+        cost.put (JoinMethod.NESTED_LOOP, n1 * n2);
+        if (table2.hasIndexOn (attributes2.split (" "))) cost.put (JoinMethod.INDEXED, n1 + n1 * PROBE);
+        if (Math.min (n1, n2) <= MEM_LIMIT) cost.put (JoinMethod.HASH, n1 + n2 + BUILD * Math.min (n1, n2));
+        cost.put (JoinMethod.SORT_MERGE, n1 * log2 (n1) + n2 * log2 (n2) + n1 + n2);
+
+        var best = JoinMethod.NESTED_LOOP;
+        for (var e : cost.entrySet ()) if (e.getValue () < cost.get (best)) best = e.getKey ();
+        return best;
+    } // chooseJoin
+
+    /************************************************************************************
+     * Join table1 and table2 on the given attributes using the cheapest algorithm.
+     *
+     * @param table1       the lhs table
+     * @param attributes1  the attributes of table1 to be compared
+     * @param table2       the rhs table
+     * @param attributes2  the attributes of table2 to be compared
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public static Table join (Table table1, String attributes1, Table table2, String attributes2)
+    {
+        var method = chooseJoin (table1, attributes1, table2, attributes2);
+        Trace.info (() -> STR."PLAN> \{table1.getName ()} (\{attributes1}) JOIN \{table2.getName ()} (\{attributes2}) using \{method}");
+
+        return switch (method) {
+        case NESTED_LOOP -> table1.join (attributes1, attributes2, table2);
+        case INDEXED     -> table1.i_join (attributes1, attributes2, table2);
+        case HASH        -> table1.h_join (attributes1, attributes2, table2);
+        case SORT_MERGE  -> table1.sm_join (attributes1, attributes2, table2);
+        }; // switch
+    } // join
+
+    /************************************************************************************
+     * Evaluate a multi-way equi-join given by its join predicates, ordering the joins by
+     * their estimated result sizes.  Predicates between tables that have already been
+     * joined are applied as selections.  The join graph must be connected and each
+     * table may appear only once.
+     *
+     * @param preds  the join predicates
+     * @return  the joined table (its columns ordered as the tables were joined)
+     */
+    public static Table join (List <JoinPred> preds)
+    {
+        var remaining = new ArrayList <> (preds);
+        var first     = remaining.get (0);                              // smallest estimated result
+        for (var p : remaining) if (estimate (p) < estimate (first)) first = p;
+        remaining.remove (first);
+
+        var offset = new LinkedHashMap <Table, Integer> ();             // column offset of each table in the result
+        var result = join (first.left, first.attributes1, first.right, first.attributes2);
+        var est    = estimate (first);
+        offset.put (first.left, 0);
+        offset.put (first.right, first.left.attributes ().length);
+
+        while (! remaining.isEmpty ()) {
+            result = applyFilters (result, offset, remaining);
+            if (remaining.isEmpty ()) break;
+
+            JoinPred next = null;                                       // cheapest connected table
+            var nextEst = Double.MAX_VALUE;
+            for (var p : remaining) {
+                if (offset.containsKey (p.left) == offset.containsKey (p.right)) continue;
+                var e = grow (est, p, offset.containsKey (p.left));
+                if (e < nextEst) { next = p; nextEst = e; }
+            } // for
+            if (next == null) {
+                out.println ("Planner.join: the join predicates are not connected");
+                return result;
+            } // if
+            remaining.remove (next);
+
+            var inLeft   = offset.containsKey (next.left);
+            var newTable = inLeft ? next.right : next.left;
+            var width    = result.attributes ().length;
+            result = join (result, resolve (offset, inLeft ? next.left : next.right,
+                                            inLeft ? next.attributes1 : next.attributes2, result),
+                           newTable, inLeft ? next.attributes2 : next.attributes1);
+            offset.put (newTable, width);
+            est = nextEst;
+        } // while
+
+        return result;
+    } // join
+
+    /************************************************************************************
+     * Apply (and remove) the predicates whose tables have both been joined already.
+     */
+    private static Table applyFilters (Table result, Map <Table, Integer> offset, List <JoinPred> remaining)
+    {
+        for (var it = remaining.iterator (); it.hasNext (); ) {
+            var p = it.next ();
+            if (! offset.containsKey (p.left) || ! offset.containsKey (p.right)) continue;
+            var c1   = resolve (offset, p.left, p.attributes1, result).split (" ");
+            var c2   = resolve (offset, p.right, p.attributes2, result).split (" ");
+            var cond = new StringJoiner (" && ");
+            for (var m = 0; m < c1.length; m++) cond.add (STR."\{c1 [m]} == \{c2 [m]}");
+            result = result.select (cond.toString ());
+            it.remove ();
+        } // for
+        return result;
+    } // applyFilters
+
+    /************************************************************************************
+     * Return the names in the joined result of the given attributes of a base table.
+     */
+    private static String resolve (Map <Table, Integer> offset, Table base, String attributes, Table result)
+    {
+        var names = new StringJoiner (" ");
+        for (var a : attributes.split (" ")) names.add (result.attributes () [offset.get (base) + base.col (a)]);
+        return names.toString ();
+    } // resolve
+
+    /************************************************************************************
+     * Estimate the number of rows produced by the join predicate p on its base tables.
+     */
+    private static double estimate (JoinPred p)
+    {
+        var s1 = p.left.stats ();
+        var s2 = p.right.stats ();
+        return s1.joinSize (p.left.match (p.attributes1.split (" ")), s2, p.right.match (p.attributes2.split (" ")));
+    } // estimate
+
+    /************************************************************************************
+     * Estimate the number of rows after joining an intermediate result of est rows with
+     * the new table of predicate p (the lhs of p is already joined if inLeft).
+     */
+    private static double grow (double est, JoinPred p, boolean inLeft)
+    {
+        var in    = inLeft ? p.left : p.right;
+        var nw    = inLeft ? p.right : p.left;
+        var inCol = in.match ((inLeft ? p.attributes1 : p.attributes2).split (" "));
+        var nwCol = nw.match ((inLeft ? p.attributes2 : p.attributes1).split (" "));
+        var size  = est * nw.stats ().rows ();
+        for (var m = 0; m < inCol.length; m++) {
+            size /= Math.max (Math.min (in.stats ().distinct (inCol [m]), Math.max (1, (long) est)),
+                              nw.stats ().distinct (nwCol [m]));
+        } // for
+        return size;
+    } // grow
+
+    /************************************************************************************
+     * Return the base 2 logarithm of x (at least 1).
+     */
+    private static double log2 (double x)
+    {
+        return Math.max (1.0, Math.log (x) / Math.log (2));
+    } // log2
+
+} // Planner
@@ -0,0 +1,266 @@
+
+/*****************************************************************************************
+ * @file  RecordCodec.java
+ *
+ * @author   John Miller
+ */
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/*****************************************************************************************
+ * The RecordCodec class packs tuples into fixed-length records (and unpacks them) using
+ * the domains of a table.  Each attribute occupies a fixed-width field:
+ *  integer types: Long (8), Integer (4), Short (2), Byte (1)
+ *  real types:    Double (8), Float (4)
+ *  string types:  Character (2), String (strLen: 2-byte length followed by UTF-8 bytes)
+ */
+public class RecordCodec
+       implements Codec <Comparable []>
+{
+    /** Default number of bytes reserved for a String field (including its length)
+     */
+    public static final int STR_LEN = 32;
+
+    /** Type codes for the supported domains
+     */
+    private static final byte LONG = 0, INT = 1, SHORT = 2, BYTE = 3,
+                              DOUBLE = 4, FLOAT = 5, CHAR = 6, STRING = 7;
+
+    /** The type code for each attribute
+     */
+    private final byte [] type;
+
+    /** The byte offset of each attribute within a record
+     */
+    private final int [] offset;
+
+    /** The number of bytes reserved for each String field
+     */
+    private final int strLen;
+
+    /** The total number of bytes in a record
+     */
+    private final int size;
+
+    /*************************************************************************************
+     * Construct a record codec for the given domains using the default String width.
+     * @param domain  the attribute domains
+     */
+    public RecordCodec (Class [] domain)
+    {
+        this (domain, STR_LEN);
+    } // constructor
+
+    /*************************************************************************************
+     * Construct a record codec for the given domains.
+     * @param domain   the attribute domains
+     * @param _strLen  the number of bytes reserved for each String field
+     */
+    public RecordCodec (Class [] domain, int _strLen)
+    {
+        strLen = _strLen;
+        type   = new byte [domain.length];
+        offset = new int [domain.length];
+        var off = 0;
+        for (var j = 0; j < domain.length; j++) {
+            type [j]   = typeOf (domain [j]);
+            offset [j] = off;
+            off       += width (type [j]);
+        } // for
+        size = off;
+    } // constructor
+
+    /*************************************************************************************
+     * Return the type code for the given domain.
+     * @param c  the domain (class)
+     */
+    private static byte typeOf (Class c)
+    {
+        return switch (c.getSimpleName ()) {
+        case "Long"      -> LONG;
+        case "Integer"   -> INT;
+        case "Short"     -> SHORT;
+        case "Byte"      -> BYTE;
+        case "Double"    -> DOUBLE;
+        case "Float"     -> FLOAT;
+        case "Character" -> CHAR;
+        case "String"    -> STRING;
+        default          -> throw new IllegalArgumentException (STR."RecordCodec: unsupported domain \{c}");
+        }; // switch
+    } // typeOf
+
+    /*************************************************************************************
+     * Return the number of bytes for a field of the given type.
+     * @param t  the type code
+     */
+    private int width (byte t)
+    {
+        return switch (t) {
+        case LONG, DOUBLE -> 8;
+        case INT, FLOAT   -> 4;
+        case SHORT, CHAR  -> 2;
+        case BYTE         -> 1;
+        default           -> strLen;
+        }; // switch
+    } // width
+
+    /*************************************************************************************
+     * Return whether value v can be packed into field j: it must not be null and, for
+     * a String field, its UTF-8 encoding must fit in strLen - 2 bytes.
+     * @param j  the index of the field
+     * @param v  the value
+     */
+    public boolean fits (int j, Comparable v)
+    {
+        if (v == null) return false;
+        if (type [j] != STRING) return true;
+        var len = ((String) v).length ();
+        if (len > strLen - 2) return false;                          // each char takes >= 1 byte
+        return 3 * len <= strLen - 2 || ((String) v).getBytes (UTF_8).length <= strLen - 2;
+    } // fits
+
+    /*************************************************************************************
+     * Return the number of bytes reserved for each String field.
+     */
+    public int strLen () { return strLen; }
+
+    /*************************************************************************************
+     * Return the number of bytes in a record.
+     */
+    public int size () { return size; }
+
+    /*************************************************************************************
+     * Return the number of attributes in a record.
+     */
+    public int arity () { return type.length; }
+
+    /*************************************************************************************
+     * Write tuple t as a record into buffer buf starting at byte offset off.
+     * @param buf  the buffer to write into
+     * @param off  the starting byte offset
+     * @param t    the tuple to encode
+     */
+    public void write (ByteBuffer buf, int off, Comparable [] t)
+    {
+        for (var j = 0; j < type.length; j++) {
+            var p = off + offset [j];
+            switch (type [j]) {
+            case LONG   -> buf.putLong (p, (Long) t [j]);
+            case INT    -> buf.putInt (p, (Integer) t [j]);
+            case SHORT  -> buf.putShort (p, (Short) t [j]);
+            case BYTE   -> buf.put (p, (Byte) t [j]);
+            case DOUBLE -> buf.putDouble (p, ((Number) t [j]).doubleValue ());
+            case FLOAT  -> buf.putFloat (p, ((Number) t [j]).floatValue ());
+            case CHAR   -> buf.putChar (p, (Character) t [j]);
+            default     -> {
+                var bytes = ((String) t [j]).getBytes (UTF_8);
+                if (bytes.length > strLen - 2) {
+                    throw new IllegalArgumentException (STR."RecordCodec: string too long for \{strLen} bytes: \{t [j]}");
+                } // if
+                buf.putShort (p, (short) bytes.length);
+                buf.put (p + 2, bytes);
+            } // default
+            } // switch
+        } // for
+    } // write
+
+    /*************************************************************************************
+     * Read a record from buffer buf starting at byte offset off and unpack it as a tuple.
+     * @param buf  the buffer to read from
+     * @param off  the starting byte offset
+     * @return  the decoded tuple
+     */
+    public Comparable [] read (ByteBuffer buf, int off)
+    {
+        var t = new Comparable [type.length];
+        for (var j = 0; j < type.length; j++) {
+            var p = off + offset [j];
+            t [j] = switch (type [j]) {
+            case LONG   -> buf.getLong (p);
+            case INT    -> buf.getInt (p);
+            case SHORT  -> buf.getShort (p);
+            case BYTE   -> buf.get (p);
+            case DOUBLE -> buf.getDouble (p);
+            case FLOAT  -> buf.getFloat (p);
+            case CHAR   -> buf.getChar (p);
+            default     -> {
+                var bytes = new byte [buf.getShort (p)];
+                buf.get (p + 2, bytes);
+                yield new String (bytes, UTF_8);
+            } // default
+            }; // switch
+        } // for
+        return t;
+    } // read
+
+    /*************************************************************************************
+     * Pack tuple t into a new fixed-length record (byte array).
+     * @param t  the tuple to pack
+     * @return  the packed record
+     */
+    public byte [] pack (Comparable [] t)
+    {
+        var record = new byte [size];
+        write (ByteBuffer.wrap (record), 0, t);
+        return record;
+    } // pack
+
+    /*************************************************************************************
+     * Unpack a fixed-length record (byte array) into a tuple.
+     * @param record  the record to unpack
+     * @return  the unpacked tuple
+     */
+    public Comparable [] unpack (byte [] record)
+    {
+        return read (ByteBuffer.wrap (record), 0);
+    } // unpack
+
+    /*************************************************************************************
+     * Return a codec for keys (KeyType) whose attributes have the given domains.
+     * @param keyDomain  the domains of the key attributes
+     */
+    public static Codec <KeyType> forKeys (Class [] keyDomain)
+    {
+        return new KeyCodec (new RecordCodec (keyDomain));
+    } // forKeys
+
+    /*************************************************************************************
+     * Return a codec for single values from the given domain.
+     * @param c  the domain (class) of the values
+     */
+    public static <T extends Comparable <T>> Codec <T> forValues (Class <T> c)
+    {
+        return new ValueCodec <> (new RecordCodec (new Class [] { c }));
+    } // forValues
+
+//-----------------------------------------------------------------------------------
+// Adapter classes
+//-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * The KeyCodec class adapts a record codec to encode keys.
+     */
+    private record KeyCodec (RecordCodec rc)
+            implements Codec <KeyType>
+    {
+        public int size () { return rc.size; }
+        public void write (ByteBuffer buf, int off, KeyType k) { rc.write (buf, off, k.getKey ()); }
+        public KeyType read (ByteBuffer buf, int off) { return new KeyType (rc.read (buf, off)); }
+    } // KeyCodec
+
+    /*************************************************************************************
+     * The ValueCodec class adapts a one-attribute record codec to encode single values.
+     */
+    private record ValueCodec <T extends Comparable <T>> (RecordCodec rc)
+            implements Codec <T>
+    {
+        public int size () { return rc.size; }
+        public void write (ByteBuffer buf, int off, T v) { rc.write (buf, off, new Comparable [] { v }); }
+        @SuppressWarnings("unchecked")
+        public T read (ByteBuffer buf, int off) { return (T) rc.read (buf, off) [0]; }
+    } // ValueCodec
+
+} // RecordCodec
+
@@ -0,0 +1,216 @@
+
+/****************************************************************************************
+ * @file  Statistics.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * The Statistics class summarizes the contents of a table for the query planner: the
+ * number of rows and, for each attribute, the number of distinct values, the minimum and
+ * maximum values and an equi-depth histogram.  Statistics are gathered in one pass over
+ * the tuples using bounded memory: distinct counts are estimated with a HyperLogLog
+ * sketch and the histograms are built from a fixed-size (seeded, hence reproducible)
+ * reservoir sample of the rows.
+ */
+public class Statistics
+       implements Serializable
+{
+    /** The number of buckets in each equi-depth histogram
+     */
+    public static final int BUCKETS = 16;
+
+    /** The maximum number of rows sampled for the histograms
+     */
+    private static final int SAMPLE = 10_000;
+
+    /** The number of index bits of the HyperLogLog sketches (2^P registers)
+     */
+    private static final int P = 12;
+
+    /*************************************************************************************
+     * The statistics for one attribute.
+     * @param distinct  the (estimated) number of distinct values
+     * @param min       the minimum value (null if the table is empty)
+     * @param max       the maximum value (null if the table is empty)
+     * @param bounds    the histogram bucket boundaries: bucket b holds about the same
+     *                  number of rows, with values between bounds [b] and bounds [b+1]
+     */
+    public record Column (long distinct, Comparable min, Comparable max, Comparable [] bounds) implements Serializable {}
+
+    /** The number of rows in the table
+     */
+    private final long rows;
+
+    /** The statistics for each attribute
+     */
+    private final Column [] column;
+
+    /*************************************************************************************
+     * Construct statistics from their parts.
+     */
+    private Statistics (long _rows, Column [] _column)
+    {
+        rows   = _rows;
+        column = _column;
+    } // constructor
+
+    /*************************************************************************************
+     * Gather the statistics for the given tuples in a single pass.
+     *
+     * @param tuples  the tuples of the table
+     * @param arity   the number of attributes
+     * @return  the statistics for the tuples
+     */
+    @SuppressWarnings("unchecked")
+    public static Statistics analyze (Iterable <Comparable []> tuples, int arity)
+    {
+        var sketch = new byte [arity][1 << P];
+        var min    = new Comparable [arity];
+        var max    = new Comparable [arity];
+        var sample = new ArrayList <Comparable []> (SAMPLE);
+        var rand   = new Random (SAMPLE);
+        var n      = 0L;
+
+        for (var t : tuples) {
+            for (var j = 0; j < arity; j++) {
+                var v = t [j];
+                if (v == null) continue;
+                add (sketch [j], v);
+                if (min [j] == null || v.compareTo (min [j]) < 0) min [j] = v;
+                if (max [j] == null || v.compareTo (max [j]) > 0) max [j] = v;
+            } // for
+            if (sample.size () < SAMPLE) sample.add (t);                // reservoir sampling
+            else {
+                var r = (long) (rand.nextDouble () * (n + 1));
+                if (r < SAMPLE) sample.set ((int) r, t);
+            } // if
+            n += 1;
+        } // for
+
+        var column = new Column [arity];
+        for (var j = 0; j < arity; j++) {
+            var vals = new ArrayList <Comparable> (sample.size ());
+            for (var t : sample) if (t [j] != null) vals.add (t [j]);
+            Collections.sort (vals);
+            var bounds = new Comparable [vals.isEmpty () ? 0 : BUCKETS + 1];
+            for (var b = 0; b < bounds.length; b++) {
+                bounds [b] = vals.get ((int) Math.min (vals.size () - 1, (long) b * vals.size () / BUCKETS));
+            } // for
+            if (bounds.length > 0) { bounds [0] = min [j]; bounds [BUCKETS] = max [j]; }
+            column [j] = new Column (Math.min (n, estimate (sketch [j])), min [j], max [j], bounds);
+        } // for
+        return new Statistics (n, column);
+    } // analyze
+
+    /*************************************************************************************
+     * Return the number of rows.
+     */
+    public long rows () { return rows; }
+
+    /*************************************************************************************
+     * Return the statistics for attribute j.
+     * @param j  the column position of the attribute
+     */
+    public Column column (int j) { return column [j]; }
+
+    /*************************************************************************************
+     * Return the number of distinct values of attribute j (at least 1).
+     * @param j  the column position of the attribute
+     */
+    public long distinct (int j) { return Math.max (1, column [j].distinct); }
+
+    /*************************************************************************************
+     * Estimate the fraction of rows having a given value for attribute j.
+     * @param j  the column position of the attribute
+     */
+    public double eqSelectivity (int j)
+    {
+        return 1.0 / distinct (j);
+    } // eqSelectivity
+
+    /*************************************************************************************
+     * Estimate the fraction of rows whose value for attribute j lies between lo and hi
+     * (inclusive, a null bound is unbounded) by counting the histogram buckets covered.
+     * @param j   the column position of the attribute
+     * @param lo  the lower bound
+     * @param hi  the upper bound
+     */
+    @SuppressWarnings("unchecked")
+    public double rangeSelectivity (int j, Comparable lo, Comparable hi)
+    {
+        var bounds = column [j].bounds;
+        if (bounds.length == 0) return 0.0;
+        var covered = 0.0;
+        for (var b = 0; b < BUCKETS; b++) {
+            var below = hi != null && bounds [b].compareTo (hi) > 0;        // bucket entirely above hi
+            var above = lo != null && bounds [b+1].compareTo (lo) < 0;      // bucket entirely below lo
+            if (! below && ! above) covered += 1;
+        } // for
+        return Math.max (eqSelectivity (j), covered / BUCKETS);
+    } // rangeSelectivity
+
+    /*************************************************************************************
+     * Estimate the number of rows in the equi-join of this table (on the attributes at
+     * cols) with the table having statistics s2 (on the attributes at cols2), assuming
+     * the values of the side with fewer distinct values occur on the other side.
+     * @param cols   the join attribute positions in this table
+     * @param s2     the statistics of the other table
+     * @param cols2  the join attribute positions in the other table
+     */
+    public double joinSize (int [] cols, Statistics s2, int [] cols2)
+    {
+        var size = (double) rows * s2.rows;
+        for (var m = 0; m < cols.length; m++) size /= Math.max (distinct (cols [m]), s2.distinct (cols2 [m]));
+        return size;
+    } // joinSize
+
+    /*************************************************************************************
+     * Return the statistics as a string.
+     */
+    public String toString ()
+    {
+        var sb = new StringBuilder (STR."rows = \{rows}");
+        for (var j = 0; j < column.length; j++) {
+            var c = column [j];
+            sb.append (STR."\n  [\{j}] distinct = \{c.distinct}, min = \{c.min}, max = \{c.max}");
+        } // for
+        return sb.toString ();
+    } // toString
+
+//-----------------------------------------------------------------------------------
+// HyperLogLog sketch
+//-----------------------------------------------------------------------------------
+
+    /*************************************************************************************
+     * Add value v to the HyperLogLog sketch.
+     */
+    private static void add (byte [] sketch, Comparable v)
+    {
+        var h = v.hashCode () * 0x9E3779B97F4A7C15L;                      // spread the bits
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        var i    = (int) (h >>> (64 - P));
+        var rank = (byte) (Long.numberOfLeadingZeros ((h << P) | (1L << (P - 1))) + 1);
+        if (rank > sketch [i]) sketch [i] = rank;
+    } // add
+
+    /*************************************************************************************
+     * Estimate the number of distinct values added to the HyperLogLog sketch.
+     */
+    private static long estimate (byte [] sketch)
+    {
+        var m     = sketch.length;
+        var sum   = 0.0;
+        var zeros = 0;
+        for (var r : sketch) { sum += Math.scalb (1.0, -r); if (r == 0) zeros++; }
+        var e = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (e <= 2.5 * m && zeros > 0) e = m * Math.log ((double) m / zeros);    // small range correction
+        return Math.round (e);
+    } // estimate
+
+} // Statistics
@@ -10,6 +10,8 @@
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.*;
 import java.util.stream.*;
 
@@ -34,6 +36,10 @@ public class Table
      */
     private static final String EXT = ".dbf";
 
+    /** Filename extension for paged index files
+     */
+    private static final String IDX = ".idx";
+
     /** Counter for naming temporary tables.
      */
     private static int count = 0;
@@ -63,31 +69,186 @@ public class Table
 
     /** Index into tuples (maps key to tuple).
      */
-    private final Map <KeyType, Comparable []> index;
+    private Map <KeyType, Comparable []> index;
+
+    /** Secondary (non-unique) indices, keyed by their attribute names (e.g., "studioName").
+     */
+    private final Map <String, Secondary> secondary = new LinkedHashMap <> ();
+
+    /** Statistics about the tuples for the planner (gathered by analyze).
+     */
+    private transient Statistics stats;
+
+    /** Codec for packing tuples into fixed-length records (created on first use).
+     */
+    private transient RecordCodec codec;
 
     /** The supported map types.
      */
-    private enum MapType { NO_MAP, TREE_MAP, HASH_MAP, LINHASH_MAP, BPTREE_MAP }
+    public enum MapType { NO_MAP, TREE_MAP, HASH_MAP, LINHASH_MAP, BPTREE_MAP, PAGED_BPTREE_MAP, LONG_MAP }
+
+    /** The supported storage layouts for tuples: a list of tuple arrays (ROW),
+     *  per-attribute primitive arrays with dictionary-encoded strings (COLUMN) or
+     *  fixed-length records in a memory-mapped file (FILE).
+     */
+    public enum StoreType { ROW, COLUMN, FILE }
+
+    /** The minimum number of tuples for select and project to run in parallel.
+     */
+    private static final int PAR_THRESHOLD = 1 << 15;
+
+    /** The minimum number of tuples in a partition processed by one fork-join task.
+     */
+    private static final int PARTITION = 1 << 12;
+
+    /** The maximum number of tuples union and minus hold in a hash set (beyond this
+     *  they sort externally).
+     */
+    private static final int HASH_LIMIT = 1 << 22;
 
-    /** The map type to be used for indices.  Change as needed.
+    /** The fraction of rows that statistics must be off by before they are regathered.
      */
-    private static final MapType mType = MapType.NO_MAP;
+    private static final double STALE = 0.2;
+
+    /** The estimated fraction of rows above which a range is scanned rather than read
+     *  through a secondary index.
+     */
+    private static final double SCAN_FRACTION = 0.25;
+
+    /** The number of tuples per batch when inserting from a stream.
+     */
+    private static final int BATCH = 1 << 14;
+
+    /** The number of tuples of the lhs looked up together by i_join.
+     */
+    private static final int PROBE_BATCH = 1 << 10;
+
+    /** The map type used for the indices of tables that do not specify one.  It may be
+     *  set at run time using the system property "table.map" (e.g., -Dtable.map=HASH_MAP).
+     */
+    private static final MapType DEFAULT_MAP = MapType.valueOf (System.getProperty ("table.map", "NO_MAP"));
+
+    /** The map type used for this table's index.
+     */
+    private MapType mType;
 
     /************************************************************************************
-     * Make a map (index) given the MapType.
+     * Make a map (index) given the MapType.  A paged B+Tree index is kept in its own
+     * file in the storage directory, with pages holding the packed keys and tuples.
+     * A LONG_MAP index requires a single integer-typed key attribute, otherwise a
+     * HASH_MAP is used instead.
+     *
+     * @param mType  the type of map to make
      */
-    private static Map <KeyType, Comparable []> makeMap ()
+    private Map <KeyType, Comparable []> makeMap (MapType mType)
     {
+        if (mType == MapType.LONG_MAP) {
+            var keyDomain = extractDom (match (key), domain);
+            if (LongKeyMap.supports (keyDomain)) return new LongKeyMap (tuples, keyDomain [0]);
+            Trace.log (Trace.Level.WARN, () -> STR."makeMap: key of \{name} is not a single integer attribute, using HASH_MAP");
+            return new HashMap <> ();
+        } // if
+
         return switch (mType) {
-        case NO_MAP      -> null;
-        case TREE_MAP    -> new TreeMap <> ();
-        case HASH_MAP    -> new HashMap <> ();
-        case LINHASH_MAP -> new LinHashMap <> (KeyType.class, Comparable [].class);
-        case BPTREE_MAP  -> new BpTreeMap <> (KeyType.class, Comparable [].class);
-        default          -> null;
+        case NO_MAP           -> null;
+        case TREE_MAP         -> new TreeMap <> ();
+        case HASH_MAP         -> new HashMap <> ();
+        case LINHASH_MAP      -> new LinHashMap <> (KeyType.class, Comparable [].class);
+        case BPTREE_MAP       -> new BpTreeMap <> (KeyType.class, Comparable [].class);
+        case PAGED_BPTREE_MAP -> makePaged (true);
+        default               -> null;
         }; // switch
     } // makeMap
 
+    /************************************************************************************
+     * Make a paged B+Tree index, kept in its own file in the storage directory.
+     *
+     * @param create  whether to start a new index (otherwise reopen the file's)
+     */
+    private PagedBpTreeMap <KeyType, Comparable []> makePaged (boolean create)
+    {
+        return new PagedBpTreeMap <> (DIR + name + IDX, RecordCodec.forKeys (extractDom (match (key), domain)),
+                                      new RecordCodec (domain), create);
+    } // makePaged
+
+    /************************************************************************************
+     * Reopen the paged B+Tree index in the storage directory if it indexes the given
+     * number of tuples with this table's layout and has not been written since the
+     * table was saved (save flushes it before writing the table's file), so it need
+     * not be rebuilt.
+     *
+     * @param rows  the number of tuples the index must hold
+     * @return  the reopened index, or null if there is no such index
+     */
+    private Map <KeyType, Comparable []> reopenPaged (long rows)
+    {
+        var file = new File (DIR + name + IDX);
+        if (! file.exists () || file.lastModified () > new File (DIR + name + EXT).lastModified ()) return null;
+        try {
+            var pm = makePaged (false);
+            if (pm.size () == rows) return pm;
+            pm.close ();                                                // different contents
+        } catch (IllegalStateException ex) {                           // different layout
+            Trace.log (Trace.Level.DEBUG, () -> STR."load: rebuilding index of \{name}: \{ex.getMessage ()}");
+        } // try
+        return null;
+    } // reopenPaged
+
+    /************************************************************************************
+     * Make a map (index) of the given type holding all the tuples of this table.
+     *
+     * @param mType  the type of map to make
+     */
+    private Map <KeyType, Comparable []> buildIndex (MapType mType)
+    {
+        var map = makeMap (mType);
+        if (map != null) map = fill (map, 0);
+        return map;
+    } // buildIndex
+
+    /************************************************************************************
+     * Add the tuples from position start onward to the given map (index) in one pass,
+     * resolving the key columns once.  An empty B+Tree is bulk loaded from the entries
+     * sorted by key, and an empty HashMap is first replaced by one sized for the tuples.
+     * As with put, the last of several tuples with the same key is the one indexed.
+     *
+     * @param map    the map to fill
+     * @param start  the position of the first tuple to add
+     * @return  the filled map (a replacement when it was resized)
+     */
+    private Map <KeyType, Comparable []> fill (Map <KeyType, Comparable []> map, int start)
+    {
+        var n    = tuples.size ();
+        var cols = match (key);
+        if (map instanceof LongKeyMap lk) {                             // primitive key => no KeyType needed
+            for (var i = start; i < n; i++) lk.putPos (KeyType.toLong (tuples.get (i) [cols [0]]), i);
+            return map;
+        } // if
+
+        if (map instanceof BpTreeMap <KeyType, Comparable []> bpt && map.isEmpty () && n - start > 1) {
+            var entries = new ArrayList <Map.Entry <KeyType, Comparable []>> (n - start);
+            for (var i = start; i < n; i++) {
+                var tup = tuples.get (i);
+                entries.add (Map.entry (new KeyType (project (tup, cols)), tup));
+            } // for
+            entries.sort (Map.Entry.comparingByKey ());                 // stable => duplicates stay in order
+            var m = 0;
+            for (var e : entries) {                                     // keep the last of equal keys
+                if (m > 0 && entries.get (m-1).getKey ().equals (e.getKey ())) m -= 1;
+                entries.set (m++, e);
+            } // for
+            bpt.bulkLoad (entries.subList (0, m).iterator ());
+            return map;
+        } // if
+
+        if (map instanceof HashMap && map.isEmpty ()) map = HashMap.newHashMap (n - start);
+        for (var i = start; i < n; i++) {
+            var tup = tuples.get (i);
+            map.put (new KeyType (project (tup, cols)), tup);
+        } // for
+        return map;
+    } // fill
+
     /************************************************************************************
      * Concatenate two arrays of type T to form a new wider array.
      *
@@ -118,16 +279,12 @@ public class Table
      */  
     public Table (String _name, String [] _attribute, Class [] _domain, String [] _key)
     {
-        name      = _name;
-        attribute = _attribute;
-        domain    = _domain;
-        key       = _key;
-        tuples    = new ArrayList <> ();
-        index     = makeMap ();
+        this (_name, _attribute, _domain, _key, new ArrayList <> (), DEFAULT_MAP);
     } // constructor
 
     /************************************************************************************
      * Construct a table from the meta-data specifications and data in _tuples list.
+     * The table is not indexed (see reindex); this is used for the results of operators.
      *
      * @param _name       the name of the relation
      * @param _attribute  the string containing attributes names
@@ -137,13 +294,31 @@ public class Table
      */  
     public Table (String _name, String [] _attribute, Class [] _domain, String [] _key,
                   List <Comparable []> _tuples)
+    {
+        this (_name, _attribute, _domain, _key, _tuples, MapType.NO_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct a table from the meta-data specifications and data in _tuples list,
+     * indexing the tuples using the given type of map.
+     *
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param _tuples     the list of tuples containing the data
+     * @param _mType      the type of map used for the index (NO_MAP for none)
+     */  
+    private Table (String _name, String [] _attribute, Class [] _domain, String [] _key,
+                   List <Comparable []> _tuples, MapType _mType)
     {
         name      = _name;
         attribute = _attribute;
         domain    = _domain;
         key       = _key;
         tuples    = _tuples;
-        index     = makeMap ();
+        mType     = _mType;
+        index     = buildIndex (mType);
     } // constructor
 
     /************************************************************************************
@@ -158,7 +333,60 @@ public class Table
     {
         this (_name, attributes.split (" "), findClass (domains.split (" ")), _key.split(" "));
 
-        out.println (STR."DDL> create table \{name} (\{attributes})");
+        Trace.info (() -> STR."DDL> create table \{name} (\{attributes})");
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, indexed using the
+     * given type of map.
+     *
+     * #usage new Table ("studio", "name address presNo", "String String Integer", "name", MapType.HASH_MAP)
+     *
+     * @param _name       the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param mapType     the type of map used for the index (NO_MAP for none)
+     */
+    public Table (String _name, String attributes, String domains, String _key, MapType mapType)
+    {
+        this (_name, attributes, domains, _key, StoreType.ROW, mapType);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, storing its tuples
+     * using the given layout.
+     *
+     * #usage new Table ("movie", "title year", "String Integer", "title year", StoreType.COLUMN)
+     *
+     * @param _name       the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param sType       the storage layout for the tuples
+     */
+    public Table (String _name, String attributes, String domains, String _key, StoreType sType)
+    {
+        this (_name, attributes, domains, _key, sType, DEFAULT_MAP);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, storing its tuples
+     * using the given layout and indexing them using the given type of map.
+     *
+     * @param _name       the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types)
+     * @param _key        the primary key
+     * @param sType       the storage layout for the tuples
+     * @param mapType     the type of map used for the index (NO_MAP for none)
+     */
+    public Table (String _name, String attributes, String domains, String _key, StoreType sType, MapType mapType)
+    {
+        this (_name, attributes.split (" "), findClass (domains.split (" ")), _key.split(" "),
+              makeStore (sType, _name, findClass (domains.split (" "))), mapType);
+
+        Trace.info (() -> STR."DDL> create table \{name} (\{attributes}) stored by \{sType} indexed by \{mapType}");
     } // constructor
 
     //----------------------------------------------------------------------------------
@@ -167,7 +395,9 @@ public class Table
 
     /************************************************************************************
      * Project the tuples onto a lower dimension by keeping only the given attributes.
-     * Check whether the original key is included in the projection.
+     * Check whether the original key is included in the projection: if not, the
+     * projected attributes become the key, so duplicate tuples are removed (keeping
+     * first occurrences) by hashing, as in union.
      *
      * #usage movie.project ("title year studioNo")
      *
@@ -176,16 +406,28 @@ public class Table
      */
     public Table project (String attributes)
     {
-        out.println ("RA> " + name + ".project (" + attributes + ")");
+        var span = Trace.begin (() -> "RA> " + name + ".project (" + attributes + ")");
         var attrs     = attributes.split (" ");
         var colDomain = extractDom (match (attrs), domain);
         var newKey    = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
+        var distinct  = newKey != key;                                  // key dropped => remove duplicates
 
-        List <Comparable []> rows = new ArrayList <> ();
+        var cols = match (attrs);
+
+        if (tuples instanceof ColumnList cl) {                          // columnar => copy whole columns
+            var pl = cl.project (cols);
+            return span.end (new Table (name + count++, attrs, colDomain, newKey, distinct ? distinct (pl) : pl));
+        } // if
 
-        //  T O   B E   I M P L E M E N T E D 
+        if (parallel ()) {                                              // large => project partitions in parallel
+            return span.end (new Table (name + count++, attrs, colDomain, newKey,
+                                        inParallel ((t, rows) -> rows.add (project (t, cols)), distinct)));
+        } // if
+
+        List <Comparable []> rows = new ArrayList <> (tuples.size ());
+        for (var t : tuples) rows.add (project (t, cols));
 
-        return new Table (name + count++, attrs, colDomain, newKey, rows);
+        return span.end (new Table (name + count++, attrs, colDomain, newKey, distinct ? distinct (rows) : rows));
     } // project
 
     /************************************************************************************
@@ -198,16 +440,23 @@ public class Table
      */
     public Table select (Predicate <Comparable []> predicate)
     {
-        out.println (STR."RA> \{name}.select (\{predicate})");
+        var span = Trace.begin (() -> STR."RA> \{name}.select (\{predicate})");
 
-        return new Table (name + count++, attribute, domain, key,
-                   tuples.stream ().filter (t -> predicate.test (t))
-                                   .collect (Collectors.toList ()));
+        if (tuples instanceof ColumnList cl) return span.end (filter (cl, i -> predicate.test (cl.get (i))));
+        return span.end (filter (predicate));
     } // select
 
     /************************************************************************************
      * Select the tuples satisfying the given simple condition on attributes/constants
-     * compared using an <op> ==, !=, <, <=, >, >=.
+     * compared using an <op> ==, !=, <, <=, >, >=.  Comparisons may be combined using
+     * && and ||.  The condition is compiled once into a predicate (see Condition).
+     * When the table is indexed and the condition restricts the primary key, the index
+     * is used to find the candidate tuples: a point lookup when every key attribute is
+     * equated to a constant, and a range lookup for sorted indices (TREE_MAP and
+     * BPTREE_MAP), unless statistics estimate that the range holds too large a fraction
+     * of the rows (see analyze).  Secondary indices (see createIndex) are used in the
+     * same way when the condition restricts their attributes.  The candidates are then
+     * checked against the full condition.
      *
      * #usage movie.select ("year == 1977")
      *
@@ -216,15 +465,87 @@ public class Table
      */
     public Table select (String condition)
     {
-        out.println (STR."RA> \{name}.select (\{condition})");
+        var span = Trace.begin (() -> STR."RA> \{name}.select (\{condition})");
 
-        List <Comparable []> rows = new ArrayList <> ();
+        try {
+            var range = (mType == MapType.NO_MAP) ? null : Condition.keyRange (condition, attribute, domain, match (key));
+            if (range != null && (range.isPoint () || index instanceof SortedMap && selective (match (key), range))) {
+                return span.end (check (lookup (index, range), condition));
+            } // if
 
-        //  T O   B E   I M P L E M E N T E D
+            for (var sec : secondary.values ()) {                      // try the secondary indices
+                range = Condition.keyRange (condition, attribute, domain, sec.cols ());
+                if (range != null && (range.isPoint () || sec.map () instanceof SortedMap && selective (sec.cols (), range))) {
+                    var rows = new ArrayList <Comparable []> ();
+                    for (var tups : lookup (sec.map (), range)) rows.addAll (tups);
+                    return span.end (check (rows, condition));
+                } // if
+            } // for
 
-        return new Table (name + count++, attribute, domain, key, rows);
+            if (tuples instanceof ColumnList cl) return span.end (filter (cl, Condition.compile (condition, attribute, domain, cl)));
+            return span.end (filter (Condition.compile (condition, attribute, domain)));
+        } catch (IllegalArgumentException ex) {
+            out.println (STR."select: \{ex.getMessage ()}");
+            return span.end (new Table (name + count++, attribute, domain, key, new ArrayList <> ()));
+        } // try
     } // select
 
+    /************************************************************************************
+     * Use an index to retrieve the values whose keys are in the given range.  The upper
+     * bound is inclusive, the lower bound may include equal keys whatever the condition.
+     *
+     * @param map    the index (sorted unless the range is a single key)
+     * @param range  the range of keys
+     * @return  the values for the keys in the range, in key order
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> List <V> lookup (Map <KeyType, V> map, Condition.KeyRange range)
+    {
+        if (range.isPoint ()) {
+            var v = map.get (range.lo ());
+            return (v == null) ? List.of () : List.of (v);
+        } // if
+
+        var sorted = (SortedMap <KeyType, V>) map;
+        var lo     = range.lo ();
+        var hi     = range.hi ();
+        if (lo != null && hi != null && lo.compareTo (hi) > 0) return List.of ();
+        var sub    = (lo == null) ? sorted.headMap (hi) : (hi == null) ? sorted.tailMap (lo) : sorted.subMap (lo, hi);
+        var vals   = new ArrayList <V> (sub.values ());
+        if (hi != null && map.get (hi) != null) vals.add (map.get (hi));   // subMap/headMap exclude hi
+        return vals;
+    } // lookup
+
+    /************************************************************************************
+     * Return whether a range on the attributes at cols is estimated to select few
+     * enough rows that reading them through an index beats a scan.  Without statistics
+     * the index is used.
+     *
+     * @param cols   the column positions of the indexed attributes
+     * @param range  the range of values
+     */
+    private boolean selective (int [] cols, Condition.KeyRange range)
+    {
+        if (stats == null || cols.length != 1) return true;
+        var lo = (range.lo () == null) ? null : range.lo ().getKey () [0];
+        var hi = (range.hi () == null) ? null : range.hi ().getKey () [0];
+        return stats.rangeSelectivity (cols [0], lo, hi) <= SCAN_FRACTION;
+    } // selective
+
+    /************************************************************************************
+     * Return a table holding the candidate tuples that satisfy the condition.
+     *
+     * @param candidates  the tuples retrieved using an index
+     * @param condition   the check condition as a string for tuples
+     */
+    private Table check (List <Comparable []> candidates, String condition)
+    {
+        var predicate = Condition.compile (condition, attribute, domain);
+        var rows      = new ArrayList <Comparable []> ();
+        for (var t : candidates) if (predicate.test (t)) rows.add (t);
+        return new Table (name + count++, attribute, domain, key, rows);
+    } // check
+
     /************************************************************************************
      * Select the tuples satisfying the given key predicate (key = value).  Use an index
      * (Map) to retrieve the tuple with the given key value.  INDEXED SELECT algorithm.
@@ -234,17 +555,30 @@ public class Table
      */
     public Table select (KeyType keyVal)
     {
-        out.println (STR."RA> \{name}.select (\{keyVal})");
+        var span = Trace.begin (() -> STR."RA> \{name}.select (\{keyVal})");
 
         List <Comparable []> rows = new ArrayList <> ();
 
-        //  T O   B E   I M P L E M E N T E D  - Project 2
+        if (mType != MapType.NO_MAP) {
+            var tup = index.get (keyVal);
+            if (tup != null) rows.add (tup);
+        } else {                                                        // no index => scan
+            var cols = match (key);
+            var kv   = keyVal.getKey ();
+            for (var t : tuples) {
+                var found = true;
+                for (var j = 0; j < cols.length && found; j++) found = t [cols [j]].equals (kv [j]);
+                if (found) { rows.add (t); break; }
+            } // for
+        } // if
 
-        return new Table (name + count++, attribute, domain, key, rows);
+        return span.end (new Table (name + count++, attribute, domain, key, rows));
     } // select
 
     /************************************************************************************
      * Union this table and table2.  Check that the two tables are compatible.
+     * Duplicate tuples are eliminated using a hash set of the tuples seen so far,
+     * so the union takes linear time (see below for inputs too large to hash).
      *
      * #usage movie.union (show)
      *
@@ -253,19 +587,55 @@ public class Table
      */
     public Table union (Table table2)
     {
-        out.println (STR."RA> \{name}.union (\{table2.name})");
+        return union (table2, HASH_LIMIT);
+    } // union
+
+    /************************************************************************************
+     * Union this table and table2, hashing at most limit tuples.  When the tables hold
+     * more tuples than that, both are sorted (externally) on all their attributes and
+     * merged, dropping duplicates as they become adjacent.
+     *
+     * @param table2  the rhs table in the union operation
+     * @param limit   the maximum number of tuples to hold in a hash set
+     * @return  a table representing the union
+     */
+    public Table union (Table table2, int limit)
+    {
         if (! compatible (table2)) return null;
+        var span = Trace.begin (() -> STR."RA> \{name}.union (\{table2.name})");
 
         List <Comparable []> rows = new ArrayList <> ();
 
-        //  T O   B E   I M P L E M E N T E D 
+        if ((long) tuples.size () + table2.tuples.size () <= limit) {   // hash => keep first occurrences
+            var seen = new HashSet <KeyType> (2 * (tuples.size () + table2.tuples.size ()) + 1);
+            for (var t : tuples)        if (seen.add (new KeyType (t))) rows.add (t);
+            for (var u : table2.tuples) if (seen.add (new KeyType (u))) rows.add (u);
+        } else {                                                        // too large => sort and merge
+            var all = allCols ();
+            try (var tIt = ExternalSort.sort (tuples.iterator (), (a, b) -> compareOn (a, all, b, all), ExternalSort.RUN_SIZE);
+                 var uIt = ExternalSort.sort (table2.tuples.iterator (), (a, b) -> compareOn (a, all, b, all), ExternalSort.RUN_SIZE)) {
+                var t = tIt.hasNext () ? tIt.next () : null;
+                var u = uIt.hasNext () ? uIt.next () : null;
+                Comparable [] last = null;
+                while (t != null || u != null) {
+                    Comparable [] next;
+                    if (u == null || t != null && compareOn (t, all, u, all) <= 0) {
+                        next = t; t = tIt.hasNext () ? tIt.next () : null;
+                    } else {
+                        next = u; u = uIt.hasNext () ? uIt.next () : null;
+                    } // if
+                    if (last == null || compareOn (last, all, next, all) != 0) rows.add (last = next);
+                } // while
+            } // try
+        } // if
 
-        return new Table (name + count++, attribute, domain, key, rows);
+        return span.end (new Table (name + count++, attribute, domain, key, rows));
     } // union
 
     /************************************************************************************
      * Take the difference of this table and table2.  Check that the two tables are
-     * compatible.
+     * compatible.  The tuples of table2 (and those already output) are kept in a hash
+     * set, so the difference takes linear time (see below for inputs too large to hash).
      *
      * #usage movie.minus (show)
      *
@@ -274,14 +644,45 @@ public class Table
      */
     public Table minus (Table table2)
     {
-        out.println (STR."RA> \{name}.minus (\{table2.name})");
+        return minus (table2, HASH_LIMIT);
+    } // minus
+
+    /************************************************************************************
+     * Take the difference of this table and table2, hashing at most limit tuples.  When
+     * the tables hold more tuples than that, both are sorted (externally) on all their
+     * attributes and merged.
+     *
+     * @param table2  The rhs table in the minus operation
+     * @param limit   the maximum number of tuples to hold in a hash set
+     * @return  a table representing the difference
+     */
+    public Table minus (Table table2, int limit)
+    {
         if (! compatible (table2)) return null;
+        var span = Trace.begin (() -> STR."RA> \{name}.minus (\{table2.name})");
 
         List <Comparable []> rows = new ArrayList <> ();
 
-        //  T O   B E   I M P L E M E N T E D 
+        if ((long) tuples.size () + table2.tuples.size () <= limit) {   // hash => probe the rhs set
+            var seen = new HashSet <KeyType> (2 * (tuples.size () + table2.tuples.size ()) + 1);
+            for (var u : table2.tuples) seen.add (new KeyType (u));
+            for (var t : tuples)        if (seen.add (new KeyType (t))) rows.add (t);
+        } else {                                                        // too large => sort and merge
+            var all = allCols ();
+            try (var tIt = ExternalSort.sort (tuples.iterator (), (a, b) -> compareOn (a, all, b, all), ExternalSort.RUN_SIZE);
+                 var uIt = ExternalSort.sort (table2.tuples.iterator (), (a, b) -> compareOn (a, all, b, all), ExternalSort.RUN_SIZE)) {
+                var u = uIt.hasNext () ? uIt.next () : null;
+                Comparable [] last = null;
+                while (tIt.hasNext ()) {
+                    var t = tIt.next ();
+                    while (u != null && compareOn (u, all, t, all) < 0) u = uIt.hasNext () ? uIt.next () : null;
+                    if (u != null && compareOn (u, all, t, all) == 0) continue;  // in table2
+                    if (last == null || compareOn (last, all, t, all) != 0) rows.add (last = t);
+                } // while
+            } // try
+        } // if
 
-        return new Table (name + count++, attribute, domain, key, rows);
+        return span.end (new Table (name + count++, attribute, domain, key, rows));
     } // minus
 
     /************************************************************************************
@@ -299,138 +700,790 @@ public class Table
      */
     public Table join (String attributes1, String attributes2, Table table2)
     {
-        out.println (STR."RA> \{name}.join (\{attributes1}, \{attributes2}, \{table2.name})");
+        var span = Trace.begin (() -> STR."RA> \{name}.join (\{attributes1}, \{attributes2}, \{table2.name})");
 
         var t_attrs = attributes1.split (" ");
         var u_attrs = attributes2.split (" ");
         var rows    = new ArrayList <Comparable []> ();
 
-        //  T O   B E   I M P L E M E N T E D 
-
-        return new Table (name + count++, concat (attribute, table2.attribute),
-                                          concat (domain, table2.domain), key, rows);
-    } // join
-
-    /************************************************************************************
-     * Join this table and table2 by performing a "theta-join".  Tuples from both tables
-     * are compared attribute1 <op> attribute2.  Disambiguate attribute names by appending "2"
-     * to the end of any duplicate attribute name.  Implement using a Nested Loop Join algorithm.
-     *
-     * #usage movie.join ("studioName == name", studio)
-     *
-     * @param condition  the theta join condition
-     * @param table2     the rhs table in the join operation
-     * @return  a table with tuples satisfying the condition
-     */
-    public Table join (String condition, Table table2)
-    {
-        out.println (STR."RA> \{name}.join (\{condition}, \{table2.name})");
-
-        var rows = new ArrayList <Comparable []> ();
+        var t_cols = match (t_attrs);
+        var u_cols = table2.match (u_attrs);
 
-        //  T O   B E   I M P L E M E N T E D
+        for (var t : tuples) {
+            for (var u : table2.tuples) {
+                if (sameValues (t, t_cols, u, u_cols)) rows.add (concat (t, u));
+            } // for
+        } // for
 
-        return new Table (name + count++, concat (attribute, table2.attribute),
-                                          concat (domain, table2.domain), key, rows);
+        return span.end (new Table (name + count++, disambiguate (attribute, table2.attribute),
+                                                    concat (domain, table2.domain), key, rows));
     } // join
 
     /************************************************************************************
      * Join this table and table2 by performing an "equi-join".  Same as above equi-join,
-     * but implemented using an INDEXED JOIN algorithm.
+     * but implemented using a HASH JOIN algorithm.  The hash table is built on the
+     * smaller of the two tables (keyed on its join attributes) and probed with each tuple
+     * of the larger one.  Composite join attributes and duplicate build keys are handled,
+     * and the columns of the result are always ordered as this table followed by table2.
+     *
+     * #usage movie.h_join ("studioName", "name", studio)
      *
      * @param attributes1  the attributes of this table to be compared (Foreign Key)
      * @param attributes2  the attributes of table2 to be compared (Primary Key)
      * @param table2       the rhs table in the join operation
      * @return  a table with tuples satisfying the equality predicate
      */
-    public Table i_join (String attributes1, String attributes2, Table table2)
+    public Table h_join (String attributes1, String attributes2, Table table2)
     {
-        //  T O   B E   I M P L E M E N T E D  - Project 2
+        var span = Trace.begin (() -> STR."RA> \{name}.h_join (\{attributes1}, \{attributes2}, \{table2.name})");
 
-        return null;
+        var t_cols = match (attributes1.split (" "));
+        var u_cols = table2.match (attributes2.split (" "));
+        var rows   = new ArrayList <Comparable []> ();
 
-    } // i_join
+        var buildLeft = tuples.size () <= table2.tuples.size ();        // build on the smaller input
+        var build     = buildLeft ? tuples : table2.tuples;
+        var probe     = buildLeft ? table2.tuples : tuples;
+        var b_cols    = buildLeft ? t_cols : u_cols;
+        var p_cols    = buildLeft ? u_cols : t_cols;
+
+        if (tuples instanceof ColumnList cl1 && table2.tuples instanceof ColumnList cl2) {
+            return span.end (h_join (cl1, t_cols, cl2, u_cols, table2));  // columnar => join on positions
+        } // if
+
+        var hTable = new HashMap <KeyType, List <Comparable []>> (2 * build.size () + 1);
+        for (var b : build) {
+            hTable.computeIfAbsent (new KeyType (project (b, b_cols)), k -> new ArrayList <> (1)).add (b);
+        } // for
+
+        for (var p : probe) {
+            var matches = hTable.get (new KeyType (project (p, p_cols)));
+            if (matches == null) continue;
+            for (var b : matches) rows.add (buildLeft ? concat (b, p) : concat (p, b));
+        } // for
+
+        return span.end (new Table (name + count++, disambiguate (attribute, table2.attribute),
+                                                    concat (domain, table2.domain), key, rows));
+    } // h_join
 
     /************************************************************************************
-     * Join this table and table2 by performing an NATURAL JOIN.  Tuples from both tables
-     * are compared requiring common attributes to be equal.  The duplicate column is also
-     * eliminated.
-     *
-     * #usage movieStar.join (starsIn)
+     * Hash join two columnar tables.  Join keys are read straight from the columns and
+     * the hash table maps keys to tuple positions, so no tuples are assembled; the
+     * result is built by gathering the matching positions from each side's columns.
      *
+     * @param cl1     the columns of this table
+     * @param t_cols  the join attribute positions in this table
+     * @param cl2     the columns of table2
+     * @param u_cols  the join attribute positions in table2
      * @param table2  the rhs table in the join operation
-     * @return  a table with tuples satisfying the equality predicate
+     * @return  a columnar table with tuples satisfying the equality predicate
      */
-    public Table join (Table table2)
+    private Table h_join (ColumnList cl1, int [] t_cols, ColumnList cl2, int [] u_cols, Table table2)
     {
-        out.println (STR."RA> \{name}.join (\{table2.name})");
-
-        var rows = new ArrayList <Comparable []> ();
-
-        //  T O   B E   I M P L E M E N T E D 
+        var mt = matches (cl1, t_cols, cl2, u_cols);
+        return new Table (name + count++, disambiguate (attribute, table2.attribute),
+                          concat (domain, table2.domain), key,
+                          ColumnList.zip (cl1.gather (mt.lPos, mt.m), cl2.gather (mt.rPos, mt.m)));
+    } // h_join
 
-        // FIX - eliminate duplicate columns
-        return new Table (name + count++, concat (attribute, table2.attribute),
-                                          concat (domain, table2.domain), key, rows);
-    } // join
+    /************************************************************************************
+     * The positions of the matching tuples found by a columnar join: the i-th match pairs
+     * tuple lPos [i] of the lhs with tuple rPos [i] of the rhs.
+     *
+     * @param lPos  the positions in the lhs
+     * @param rPos  the positions in the rhs
+     * @param m     the number of matches
+     */
+    private record Matches (int [] lPos, int [] rPos, int m) {}
 
     /************************************************************************************
-     * Return the column position for the given attribute name or -1 if not found.
+     * Find the matching tuples of two column lists by hashing cl2 (keys to positions)
+     * and probing it with each tuple of cl1.
      *
-     * @param attr  the given attribute name
-     * @return  a column position
+     * @param cl1     the lhs columns
+     * @param t_cols  the join attribute positions in cl1
+     * @param cl2     the rhs columns
+     * @param u_cols  the join attribute positions in cl2
+     * @return  the positions of the matching tuples
      */
-    public int col (String attr)
+    private static Matches matches (ColumnList cl1, int [] t_cols, ColumnList cl2, int [] u_cols)
     {
-        for (var i = 0; i < attribute.length; i++) {
-           if (attr.equals (attribute [i])) return i;
+        var hTable = new HashMap <KeyType, int []> (2 * cl2.size () + 1);   // key -> positions (count in [0])
+        for (var i = 0; i < cl2.size (); i++) {
+            var k   = new KeyType (columnKey (cl2, i, u_cols));
+            var ps  = hTable.get (k);
+            if (ps == null) { ps = new int [2]; hTable.put (k, ps); }
+            else if (ps [0] + 1 == ps.length) { ps = Arrays.copyOf (ps, 2 * ps.length); hTable.put (k, ps); }
+            ps [++ps [0]] = i;
         } // for
 
-        return -1;       // -1 => not found
-    } // col
+        var lPos = new int [16];
+        var rPos = new int [16];
+        var m    = 0;
+        for (var i = 0; i < cl1.size (); i++) {
+            var ps = hTable.get (new KeyType (columnKey (cl1, i, t_cols)));
+            if (ps == null) continue;
+            for (var k = 1; k <= ps [0]; k++) {
+                if (m == lPos.length) { lPos = Arrays.copyOf (lPos, 2 * m); rPos = Arrays.copyOf (rPos, 2 * m); }
+                lPos [m] = i;
+                rPos [m++] = ps [k];
+            } // for
+        } // for
+
+        return new Matches (lPos, rPos, m);
+    } // matches
 
     /************************************************************************************
-     * Insert a tuple to the table.
-     *
-     * #usage movie.insert ("Star_Wars", 1977, 124, "T", "Fox", 12345)
+     * Extract the values at the given columns of the i-th tuple of a column list.
      *
-     * @param tup  the array of attribute values forming the tuple
-     * @return  whether insertion was successful
+     * @param cl    the column list
+     * @param i     the position of the tuple
+     * @param cols  the attribute positions to extract
+     * @return  the extracted values
      */
-    public boolean insert (Comparable [] tup)
+    private static Comparable [] columnKey (ColumnList cl, int i, int [] cols)
     {
-        out.println (STR."DML> insert into \{name} values (\{Arrays.toString (tup)})");
-
-        if (typeCheck (tup)) {
-            tuples.add (tup);
-            var keyVal = new Comparable [key.length];
-            var cols   = match (key);
-            for (var j = 0; j < keyVal.length; j++) keyVal [j] = tup [cols [j]];
-            if (mType != MapType.NO_MAP) index.put (new KeyType (keyVal), tup);
-            return true;
-        } else {
-            return false;
-        } // if
-    } // insert
+        var kv = new Comparable [cols.length];
+        for (var j = 0; j < cols.length; j++) kv [j] = cl.value (i, cols [j]);
+        return kv;
+    } // columnKey
 
     /************************************************************************************
-     * Get the name of the table.
+     * Join this table and table2 by performing an "equi-join".  Same as above equi-join,
+     * but implemented using a SORT-MERGE JOIN algorithm.  Both inputs are sorted on their
+     * join attributes (using an external sort that spills sorted runs to the storage
+     * directory when an input has more than 'runSize' tuples) and then merged in a single
+     * pass.  Only the group of rhs tuples sharing the current join key is buffered, and
+     * the joined tuples are streamed into the result (see Pipeline.mergeJoin); to consume
+     * them without building a table, use Pipeline.sm_join.
      *
-     * @return  the table's name
+     * #usage movie.sm_join ("studioName", "name", studio)
+     *
+     * @param attributes1  the attributes of this table to be compared (Foreign Key)
+     * @param attributes2  the attributes of table2 to be compared (Primary Key)
+     * @param table2       the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
      */
-    public String getName ()
+    public Table sm_join (String attributes1, String attributes2, Table table2)
     {
-        return name;
-    } // getName
+        return sm_join (attributes1, attributes2, table2, ExternalSort.RUN_SIZE);
+    } // sm_join
 
     /************************************************************************************
-     * Print this table.
+     * Join this table and table2 by performing a SORT-MERGE JOIN, holding at most
+     * 'runSize' tuples of either input in memory while sorting.
+     *
+     * @param attributes1  the attributes of this table to be compared (Foreign Key)
+     * @param attributes2  the attributes of table2 to be compared (Primary Key)
+     * @param table2       the rhs table in the join operation
+     * @param runSize      the maximum number of tuples per in-memory sorted run
+     * @return  a table with tuples satisfying the equality predicate
      */
-    public void print ()
+    public Table sm_join (String attributes1, String attributes2, Table table2, int runSize)
     {
-        out.println (STR."\n Table \{name}");
-        out.print ("|-");
-        out.print ("---------------".repeat (attribute.length));
+        var span = Trace.begin (() -> STR."RA> \{name}.sm_join (\{attributes1}, \{attributes2}, \{table2.name})");
+
+        var t_cols = match (attributes1.split (" "));
+        var u_cols = table2.match (attributes2.split (" "));
+        var rows   = new ArrayList <Comparable []> ();
+
+        try (var joined = Pipeline.mergeJoin (tuples.iterator (), t_cols, table2.tuples.iterator (), u_cols, runSize)) {
+            joined.forEachOrdered (rows::add);
+        } // try
+
+        return span.end (new Table (name + count++, disambiguate (attribute, table2.attribute),
+                                                    concat (domain, table2.domain), key, rows));
+    } // sm_join
+
+    /************************************************************************************
+     * Join this table and table2 by performing a "theta-join".  Tuples from both tables
+     * are compared attribute1 <op> attribute2.  Disambiguate attribute names by appending "2"
+     * to the end of any duplicate attribute name.  The condition may be a conjunction of
+     * such comparisons (e.g., a band "year >= start && year <= end").
+     *
+     * Unless every comparison is !=, one side is put in order of the attribute that the
+     * most comparisons (other than !=) bound, using its TREE_MAP or BPTREE_MAP index on that
+     * attribute when it has one and sorting it otherwise (the smaller side is preferred).
+     * Each tuple of the other side then finds the range of matching tuples by binary search
+     * and checks only those against the remaining comparisons.  A condition made only of
+     * != comparisons uses a NESTED LOOP JOIN.
+     *
+     * #usage movie.join ("studioName == name", studio)
+     *
+     * @param condition  the theta join condition
+     * @param table2     the rhs table in the join operation
+     * @return  a table with tuples satisfying the condition
+     */
+    public Table join (String condition, Table table2)
+    {
+        var span = Trace.begin (() -> STR."RA> \{name}.join (\{condition}, \{table2.name})");
+
+        var rows = new ArrayList <Comparable []> ();
+        List <Condition.JoinComp> comps;
+        try {
+            comps = Condition.joinComparisons (condition, attribute, domain, table2.attribute, table2.domain);
+        } catch (IllegalArgumentException ex) {
+            out.println (STR."join: \{ex.getMessage ()}");
+            return span.end (new Table (name + count++, disambiguate (attribute, table2.attribute),
+                                                        concat (domain, table2.domain), key, rows));
+        } // try
+
+        var left = tuples.size () <= table2.tuples.size ();             // choose the side and attribute to order
+        var side = -1;
+        var col  = -1;
+        var best = 0;
+        for (var cp : comps) {
+            if (cp.op () == Condition.Op.NE) continue;
+            for (var s = 0; s < 2; s++) {
+                var c     = (s == 0) ? cp.j () : cp.k ();
+                var score = 2 * bounding (comps, s, c) + ((s == 0) == left ? 1 : 0);
+                if (score > best) { best = score; side = s; col = c; }
+            } // for
+        } // for
+
+        if (side < 0) {                                                 // only != => nested loop
+            for (var t : tuples) {
+                for (var u : table2.tuples) if (satisfies (comps, t, u)) rows.add (concat (t, u));
+            } // for
+        } else {
+            var sortLeft = side == 0;
+            var sorted   = (sortLeft ? this : table2).orderedOn (col);
+            var bounds   = new ArrayList <Condition.JoinComp> ();
+            var checks   = new ArrayList <Condition.JoinComp> ();
+            for (var cp : comps) {
+                var onCol = cp.op () != Condition.Op.NE && ((sortLeft ? cp.j () : cp.k ()) == col);
+                (onCol ? bounds : checks).add (cp);
+            } // for
+
+            for (var p : sortLeft ? table2.tuples : tuples) {
+                int lo = 0, hi = sorted.length;
+                for (var cp : bounds) {
+                    var op = sortLeft ? cp.op () : cp.op ().flip ();    // sorted value op p's value
+                    switch (op) {
+                    case GT -> lo = Math.max (lo, search (sorted, cp, sortLeft, p, true));
+                    case GE -> lo = Math.max (lo, search (sorted, cp, sortLeft, p, false));
+                    case LT -> hi = Math.min (hi, search (sorted, cp, sortLeft, p, false));
+                    case LE -> hi = Math.min (hi, search (sorted, cp, sortLeft, p, true));
+                    default -> { lo = Math.max (lo, search (sorted, cp, sortLeft, p, false));
+                                 hi = Math.min (hi, search (sorted, cp, sortLeft, p, true)); }
+                    } // switch
+                } // for
+                for (var i = lo; i < hi; i++) {
+                    var t = sortLeft ? sorted [i] : p;
+                    var u = sortLeft ? p : sorted [i];
+                    if (satisfies (checks, t, u)) rows.add (concat (t, u));
+                } // for
+            } // for
+        } // if
+
+        return span.end (new Table (name + count++, disambiguate (attribute, table2.attribute),
+                                                    concat (domain, table2.domain), key, rows));
+    } // join
+
+    /************************************************************************************
+     * Return the number of comparisons (other than !=) bounding attribute col of the
+     * given side (0 for the lhs, 1 for the rhs) of a theta-join.
+     *
+     * @param comps  the comparisons of the join condition
+     * @param side   the side of the join
+     * @param col    the attribute position in that side's table
+     */
+    private static int bounding (List <Condition.JoinComp> comps, int side, int col)
+    {
+        var n = 0;
+        for (var cp : comps) {
+            if (cp.op () != Condition.Op.NE && ((side == 0) ? cp.j () : cp.k ()) == col) n += 1;
+        } // for
+        return n;
+    } // bounding
+
+    /************************************************************************************
+     * Return whether tuples t (lhs) and u (rhs) satisfy all the given comparisons.
+     *
+     * @param comps  the comparisons to check
+     * @param t      the lhs tuple
+     * @param u      the rhs tuple
+     */
+    private static boolean satisfies (List <Condition.JoinComp> comps, Comparable [] t, Comparable [] u)
+    {
+        for (var cp : comps) if (! cp.test (t, u)) return false;
+        return true;
+    } // satisfies
+
+    /************************************************************************************
+     * Return the tuples of this table in order of the attribute at col, taking them from
+     * the primary index when it is ordered on that attribute alone and holds every tuple.
+     *
+     * @param col  the attribute position to order on
+     */
+    @SuppressWarnings("unchecked")
+    private Comparable [][] orderedOn (int col)
+    {
+        if (index instanceof SortedMap && key.length == 1 && key [0].equals (attribute [col])
+                                       && index.size () == tuples.size ()) {
+            return index.values ().toArray (new Comparable [0][]);     // already in key order
+        } // if
+        var sorted = tuples.toArray (new Comparable [0][]);
+        Arrays.sort (sorted, (a, b) -> a [col].compareTo (b [col]));
+        return sorted;
+    } // orderedOn
+
+    /************************************************************************************
+     * Binary search the sorted tuples of one side of a theta-join for the first one
+     * whose value in comparison cp is at least (or, when after, more than) that of
+     * tuple p of the other side.
+     *
+     * @param sorted    the tuples ordered on the compared attribute
+     * @param cp        the comparison
+     * @param sortLeft  whether the sorted tuples are from the lhs
+     * @param p         the tuple of the other side
+     * @param after     whether to skip the tuples with values equal to p's
+     * @return  the position found (sorted.length if there is none)
+     */
+    private static int search (Comparable [][] sorted, Condition.JoinComp cp, boolean sortLeft,
+                               Comparable [] p, boolean after)
+    {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            var mid = (lo + hi) >>> 1;
+            var c   = sortLeft ? cp.compare (sorted [mid][cp.j ()], p [cp.k ()])
+                               : - cp.compare (p [cp.j ()], sorted [mid][cp.k ()]);
+            if (c < 0 || after && c == 0) lo = mid + 1;
+            else hi = mid;
+        } // while
+        return lo;
+    } // search
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "equi-join".  Same as above equi-join,
+     * but implemented using an INDEXED JOIN algorithm.  Each tuple of this table looks up
+     * its join values in an index of table2 on attributes2: the primary index (of any map
+     * type) when attributes2 is the key of table2, so there is one lookup per tuple and at
+     * most one match, else a secondary index (see createIndex), else a temporary hash index
+     * built for the join.  The tuples are processed PROBE_BATCH at a time: first all the
+     * lookups for the batch, then the building of its result tuples.
+     *
+     * #usage movie.i_join ("studioName", "name", studio)
+     *
+     * @param attributes1  the attributes of this table to be compared (Foreign Key)
+     * @param attributes2  the attributes of table2 to be compared (Primary Key)
+     * @param table2       the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table i_join (String attributes1, String attributes2, Table table2)
+    {
+        var span = Trace.begin (() -> STR."RA> \{name}.i_join (\{attributes1}, \{attributes2}, \{table2.name})");
+
+        var t_cols  = match (attributes1.split (" "));
+        var u_attrs = attributes2.split (" ");
+        var lookup  = table2.lookupOn (u_attrs, t_cols, extractDom (t_cols, domain));
+        if (lookup == null) {                                           // no index => build a temporary one
+            Trace.log (Trace.Level.WARN, () -> STR."i_join: \{table2.name} has no index on (\{attributes2}), building a temporary one");
+            var tmp = new Secondary (table2.match (u_attrs), new HashMap <> (2 * table2.tuples.size () + 1));
+            for (var u : table2.tuples) tmp.add (u);
+            lookup = t -> tmp.map ().get (new KeyType (project (t, t_cols)));
+        } // if
+
+        var rows  = new ArrayList <Comparable []> ();
+        var batch = new Comparable [PROBE_BATCH][];
+        var hits  = new Object [PROBE_BATCH];
+        for (var it = tuples.iterator (); it.hasNext (); ) {
+            var n = 0;
+            for ( ; n < PROBE_BATCH && it.hasNext (); n++) {             // look up a batch of tuples
+                batch [n] = it.next ();
+                hits [n]  = lookup.apply (batch [n]);
+            } // for
+            for (var i = 0; i < n; i++) {                               // then join them
+                if (hits [i] instanceof Comparable [] u) rows.add (concat (batch [i], u));
+                else if (hits [i] instanceof List <?> us) {
+                    for (var u : us) rows.add (concat (batch [i], (Comparable []) u));
+                } // if
+            } // for
+        } // for
+
+        return span.end (new Table (name + count++, disambiguate (attribute, table2.attribute),
+                                                    concat (domain, table2.domain), key, rows));
+    } // i_join
+
+    /************************************************************************************
+     * Join this table and table2 by performing an NATURAL JOIN.  Tuples from both tables
+     * are compared requiring common attributes to be equal.  The duplicate column is also
+     * eliminated.  The common attributes and the layout of the result (the columns of this
+     * table followed by the other columns of table2) are worked out once, the join itself
+     * is a hash join on the common attributes, and each result tuple is built by copying
+     * the lhs tuple into a tuple of the final width and filling in the rest.  Without
+     * common attributes, the result is the cartesian product.
+     *
+     * #usage movieStar.join (starsIn)
+     *
+     * @param table2  the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table join (Table table2)
+    {
+        var span = Trace.begin (() -> STR."RA> \{name}.join (\{table2.name})");
+
+        var attrs  = Arrays.asList (attribute);
+        var t_cols = new int [table2.attribute.length];                 // common attributes in this table
+        var u_cols = new int [table2.attribute.length];                 // common attributes in table2
+        var rest   = new int [table2.attribute.length];                 // other attributes of table2
+        int nc = 0, nr = 0;
+        for (var j = 0; j < table2.attribute.length; j++) {
+            var k = attrs.indexOf (table2.attribute [j]);
+            if (k >= 0) { t_cols [nc] = k; u_cols [nc++] = j; }
+            else        rest [nr++] = j;
+        } // for
+        t_cols = Arrays.copyOf (t_cols, nc);
+        u_cols = Arrays.copyOf (u_cols, nc);
+        rest   = Arrays.copyOf (rest, nr);
+
+        var width   = attribute.length + nr;
+        var newAttr = Arrays.copyOf (attribute, width);
+        var newDom  = Arrays.copyOf (domain, width);
+        for (var j = 0; j < nr; j++) {
+            newAttr [attribute.length + j] = table2.attribute [rest [j]];
+            newDom [attribute.length + j]  = table2.domain [rest [j]];
+        } // for
+
+        if (tuples instanceof ColumnList cl1 && table2.tuples instanceof ColumnList cl2) {
+            var mt = matches (cl1, t_cols, cl2, u_cols);                // columnar => join on positions
+            var cols = ColumnList.zip (cl1.gather (mt.lPos, mt.m), cl2.project (rest).gather (mt.rPos, mt.m));
+            return span.end (new Table (name + count++, newAttr, newDom, key, cols));
+        } // if
+
+        var rows = new ArrayList <Comparable []> ();
+        if (nc == 0) {                                                  // no common attributes => product
+            for (var t : tuples) {
+                for (var u : table2.tuples) rows.add (joinRow (t, u, width, rest));
+            } // for
+            return span.end (new Table (name + count++, newAttr, newDom, key, rows));
+        } // if
+
+        var buildLeft = tuples.size () <= table2.tuples.size ();        // build on the smaller input
+        var build     = buildLeft ? tuples : table2.tuples;
+        var probe     = buildLeft ? table2.tuples : tuples;
+        var b_cols    = buildLeft ? t_cols : u_cols;
+        var p_cols    = buildLeft ? u_cols : t_cols;
+
+        var hTable = new HashMap <KeyType, List <Comparable []>> (2 * build.size () + 1);
+        for (var b : build) {
+            hTable.computeIfAbsent (new KeyType (project (b, b_cols)), k -> new ArrayList <> (1)).add (b);
+        } // for
+
+        for (var p : probe) {
+            var matches = hTable.get (new KeyType (project (p, p_cols)));
+            if (matches == null) continue;
+            for (var b : matches) rows.add (buildLeft ? joinRow (b, p, width, rest) : joinRow (p, b, width, rest));
+        } // for
+
+        return span.end (new Table (name + count++, newAttr, newDom, key, rows));
+    } // join
+
+    /************************************************************************************
+     * Build a natural join result tuple from tuple t of this table and tuple u of table2:
+     * all of t followed by the values of u at the rest positions.
+     *
+     * @param t      the lhs tuple
+     * @param u      the rhs tuple
+     * @param width  the arity of the result
+     * @param rest   the positions in u of the attributes not common to both tables
+     * @return  the joined tuple
+     */
+    private static Comparable [] joinRow (Comparable [] t, Comparable [] u, int width, int [] rest)
+    {
+        var tup = Arrays.copyOf (t, width);
+        for (int j = 0, k = t.length; j < rest.length; j++, k++) tup [k] = u [rest [j]];
+        return tup;
+    } // joinRow
+
+    /************************************************************************************
+     * Return the column position for the given attribute name or -1 if not found.
+     *
+     * @param attr  the given attribute name
+     * @return  a column position
+     */
+    public int col (String attr)
+    {
+        for (var i = 0; i < attribute.length; i++) {
+           if (attr.equals (attribute [i])) return i;
+        } // for
+
+        return -1;       // -1 => not found
+    } // col
+
+    /************************************************************************************
+     * Insert a tuple to the table.
+     *
+     * #usage movie.insert ("Star_Wars", 1977, 124, "T", "Fox", 12345)
+     *
+     * @param tup  the array of attribute values forming the tuple
+     * @return  whether insertion was successful
+     */
+    public boolean insert (Comparable [] tup)
+    {
+        Trace.log (Trace.Level.DEBUG, () -> STR."DML> insert into \{name} values (\{Arrays.toString (tup)})");
+
+        if (typeCheck (tup)) {
+            indexTuple (tup, tuples.size ());                           // index first => a failure stores nothing
+            tuples.add (tup);
+            return true;
+        } else {
+            return false;
+        } // if
+    } // insert
+
+    /************************************************************************************
+     * Insert a collection of tuples into this table.  Unlike insert, no DML line is
+     * printed per tuple: the tuples are type checked a column at a time, appended to
+     * storage sized for them up front, and then added to the indices in a single pass
+     * (see fill).  Tuples failing the type check are reported and skipped.
+     *
+     * #usage teaching.bulkInsert (Arrays.asList (tuples))
+     *
+     * @param tups  the tuples to insert
+     * @return  the number of tuples inserted
+     */
+    public int bulkInsert (Collection <Comparable []> tups)
+    {
+        var span = Trace.begin (() -> STR."DML> bulk insert into \{name} (\{tups.size ()} tuples)");
+
+        var start = tuples.size ();
+        if (tuples instanceof ArrayList <Comparable []> al) al.ensureCapacity (start + tups.size ());
+        if (tuples instanceof ColumnList cl) cl.ensureCapacity (start + tups.size ());
+        append (tups);
+        indexFrom (start);
+        var n = tuples.size () - start;
+        span.end (n);
+        return n;
+    } // bulkInsert
+
+    /************************************************************************************
+     * Insert the tuples delivered by a stream into this table, consuming it in batches
+     * of BATCH tuples, so that the stream (e.g., from a generator or a file) need never
+     * be materialized.  As in bulkInsert (Collection), the indices are updated once
+     * at the end.
+     *
+     * #usage student.bulkInsert (Stream.of (rows))
+     *
+     * @param tups  the stream of tuples to insert
+     * @return  the number of tuples inserted
+     */
+    public int bulkInsert (Stream <Comparable []> tups)
+    {
+        var span = Trace.begin (() -> STR."DML> bulk insert into \{name} (stream)");
+
+        var start = tuples.size ();
+        var batch = new ArrayList <Comparable []> (BATCH);
+        for (var it = tups.iterator (); it.hasNext (); ) {
+            batch.add (it.next ());
+            if (batch.size () == BATCH) { append (batch); batch.clear (); }
+        } // for
+        append (batch);
+        indexFrom (start);
+        var n = tuples.size () - start;
+        span.end (n);
+        return n;
+    } // bulkInsert
+
+    /************************************************************************************
+     * Type check a batch of tuples and append those that pass to storage (without
+     * indexing them).
+     *
+     * @param batch  the tuples to append
+     */
+    private void append (Collection <Comparable []> batch)
+    {
+        var ok = typeCheck (batch);
+        var i  = 0;
+        for (var t : batch) if (ok == null || ok [i++]) tuples.add (t);
+    } // append
+
+    /************************************************************************************
+     * Add the tuples from position start onward to the primary and secondary indices.
+     *
+     * @param start  the position of the first tuple to index
+     */
+    private void indexFrom (int start)
+    {
+        if (index != null) index = fill (index, start);
+        if (secondary.isEmpty ()) return;
+        for (var i = start; i < tuples.size (); i++) {
+            var tup = tuples.get (i);
+            for (var sec : secondary.values ()) sec.add (tup);
+        } // for
+    } // indexFrom
+
+    /************************************************************************************
+     * Return a pipeline over the tuples of this table, so that chained operators are
+     * evaluated lazily, one tuple at a time (see Pipeline).
+     *
+     * #usage movie.pipe ().select (t -> t[movie.col("year")].equals (1977)).project ("title").toTable ()
+     *
+     * @return  a pipeline delivering the tuples of this table
+     */
+    public Pipeline pipe ()
+    {
+        return new Pipeline (name, attribute, domain, key, () -> tuples.stream ());
+    } // pipe
+
+    /************************************************************************************
+     * Create a secondary (non-unique) index on the given attributes, mapping their values
+     * to all the tuples having them.  The index is built from the current tuples and
+     * kept up to date by insert.  It is used by select (String) and i_join.
+     *
+     * #usage movie.createIndex ("studioName", Table.MapType.HASH_MAP)
+     *
+     * @param attributes  the attributes to index
+     * @param type        the type of map (HASH_MAP, TREE_MAP, LINHASH_MAP or BPTREE_MAP)
+     */
+    @SuppressWarnings("unchecked")
+    public void createIndex (String attributes, MapType type)
+    {
+        Trace.info (() -> STR."DDL> create index on \{name} (\{attributes}) using \{type}");
+
+        var attrs = attributes.split (" ");
+        Map <KeyType, List <Comparable []>> map = switch (type) {
+        case TREE_MAP    -> new TreeMap <> ();
+        case HASH_MAP    -> new HashMap <> ();
+        case LINHASH_MAP -> new LinHashMap <> (KeyType.class, (Class <List <Comparable []>>) (Class) List.class);
+        case BPTREE_MAP  -> new BpTreeMap <> (KeyType.class, (Class <List <Comparable []>>) (Class) List.class);
+        default          -> {
+            Trace.log (Trace.Level.WARN, () -> STR."createIndex: \{type} cannot hold a secondary index, using HASH_MAP");
+            yield new HashMap <> ();
+        } // default
+        }; // switch
+
+        var sec = new Secondary (match (attrs), map);
+        for (var t : tuples) sec.add (t);
+        secondary.put (String.join (" ", attrs), sec);
+    } // createIndex
+
+    /************************************************************************************
+     * Rebuild the index of this table using another type of map.  The new index is
+     * built from the tuples before it replaces the old one, so lookups keep using the
+     * old index until then.
+     *
+     * #usage movie.reindex (MapType.BPTREE_MAP)
+     *
+     * @param mapType  the type of map to use for the index (NO_MAP drops the index)
+     */
+    public void reindex (MapType mapType)
+    {
+        Trace.info (() -> STR."DDL> reindex table \{name} using \{mapType}");
+
+        var old = index;
+        if (old instanceof PagedBpTreeMap pm && mapType == MapType.PAGED_BPTREE_MAP) pm.close ();  // same file
+        var map = buildIndex (mapType);
+        index   = map;
+        mType   = mapType;
+        if (old instanceof PagedBpTreeMap pm && mapType != MapType.PAGED_BPTREE_MAP) pm.close ();
+    } // reindex
+
+    /************************************************************************************
+     * Return the type of map used for the index of this table.
+     */
+    public MapType getMapType ()
+    {
+        return mType;
+    } // getMapType
+
+    /************************************************************************************
+     * Gather statistics about the tuples of this table (row count and, per attribute,
+     * distinct values, min, max and an equi-depth histogram) for the query planner.
+     *
+     * #usage movie.analyze ()
+     *
+     * @return  the statistics
+     */
+    public Statistics analyze ()
+    {
+        Trace.info (() -> STR."DDL> analyze table \{name}");
+
+        stats = Statistics.analyze (tuples, attribute.length);
+        return stats;
+    } // analyze
+
+    /************************************************************************************
+     * Return the statistics for this table, gathering them if there are none or the
+     * number of tuples has changed by more than the STALE fraction since they were.
+     */
+    Statistics stats ()
+    {
+        if (stats == null || Math.abs (tuples.size () - stats.rows ()) > STALE * stats.rows ()) analyze ();
+        return stats;
+    } // stats
+
+    /************************************************************************************
+     * Return the number of tuples in this table.
+     */
+    int rows ()
+    {
+        return tuples.size ();
+    } // rows
+
+    /************************************************************************************
+     * Return the attribute names of this table.
+     */
+    String [] attributes ()
+    {
+        return attribute;
+    } // attributes
+
+    /************************************************************************************
+     * Return whether this table has an index (primary or secondary) on the given
+     * attributes.
+     *
+     * @param attrs  the attributes
+     */
+    boolean hasIndexOn (String [] attrs)
+    {
+        return (mType != MapType.NO_MAP && Arrays.equals (attrs, key)) || secondary.containsKey (String.join (" ", attrs));
+    } // hasIndexOn
+
+    /************************************************************************************
+     * Return a function looking up, using an index of this table on the given attributes,
+     * the match for a tuple of another table whose join values are at t_cols: the tuple
+     * having them (or null) when the attributes are the key and there is a primary index,
+     * else the list of tuples having them (or null) from a secondary index; null if there
+     * is no such index.  A LONG_MAP primary index is probed without making a KeyType when
+     * the other table's join value has the key attribute's domain.
+     *
+     * @param attrs   the attributes of this table whose values are looked up
+     * @param t_cols  the positions of the join values in the other table's tuples
+     * @param t_dom   the domains of the join values
+     */
+    private Function <Comparable [], Object> lookupOn (String [] attrs, int [] t_cols, Class [] t_dom)
+    {
+        if (mType != MapType.NO_MAP && Arrays.equals (attrs, key)) {
+            if (index instanceof LongKeyMap lk && t_dom.length == 1 && t_dom [0] == lk.keyClass ()) {
+                return t -> { var v = t [t_cols [0]]; return KeyType.isIntegral (v) ? lk.get (KeyType.toLong (v)) : null; };
+            } // if
+            var idx = index;
+            return t -> idx.get (new KeyType (project (t, t_cols)));
+        } // if
+        var sec = secondary.get (String.join (" ", attrs));
+        if (sec != null) return t -> sec.map ().get (new KeyType (project (t, t_cols)));
+        return null;
+    } // lookupOn
+
+    /************************************************************************************
+     * Get the name of the table.
+     *
+     * @return  the table's name
+     */
+    public String getName ()
+    {
+        return name;
+    } // getName
+
+    /************************************************************************************
+     * Print this table.
+     */
+    public void print ()
+    {
+        out.println (STR."\n Table \{name}");
+        out.print ("|-");
+        out.print ("---------------".repeat (attribute.length));
         out.println ("-|");
         out.print ("| ");
         for (var a : attribute) out.printf ("%15s", a);
@@ -464,42 +1517,74 @@ public class Table
     } // printIndex
 
     /************************************************************************************
-     * Load the table with the given name into memory. 
+     * Load the table with the given name into memory.  The tuples are streamed from
+     * the table's binary file (see DbfFile) a chunk at a time and indexed using the map
+     * type the table was saved with.  A FILE table whose data file (store/name.dat)
+     * still holds the saved tuples, and a paged B+Tree index whose file (store/name.idx)
+     * still does, are reopened rather than rebuilt.
      *
      * @param name  the name of the table to load
      */
     public static Table load (String name)
     {
         Table tab = null;
-        try {
-            ObjectInputStream ois = new ObjectInputStream (new FileInputStream (DIR + name + EXT));
-            tab = (Table) ois.readObject ();
-            ois.close ();
-        } catch (IOException ex) {
+        try (var in = DbfFile.open (DIR + name + EXT)) {
+            var h       = in.header ();
+            var sType   = StoreType.valueOf (h.store ());
+            var mapType = MapType.valueOf (h.map ());
+            var kept    = (sType == StoreType.FILE) ? FileList.reopen (h.name (), h.domain (), h.rows ()) : null;
+            tab = new Table (h.name (), h.attribute (), h.domain (), h.key (),
+                             (kept != null) ? kept : makeStore (sType, h.name (), h.domain ()), MapType.NO_MAP);
+            if (kept == null) while (in.hasNext ()) tab.tuples.add (in.next ());
+
+            var paged = (mapType == MapType.PAGED_BPTREE_MAP) ? tab.reopenPaged (h.rows ()) : null;
+            tab.index = (paged != null) ? paged : tab.buildIndex (mapType);
+            tab.mType = mapType;
+        } catch (UncheckedIOException ex) {
             out.println ("load: IO Exception");
             ex.printStackTrace ();
-        } catch (ClassNotFoundException ex) {
-            out.println ("load: Class Not Found Exception");
-            ex.printStackTrace ();
         } // try
         return tab;
     } // load
 
     /************************************************************************************
-     * Save this table in a file.
+     * Save this table in a file (see DbfFile for the format).
      */
     public void save ()
     {
         try {
-            var oos = new ObjectOutputStream (new FileOutputStream (DIR + name + EXT));
-            oos.writeObject (this);
-            oos.close ();
-        } catch (IOException ex) {
+            if (tuples instanceof FileList fl) fl.flush ();              // so load can reopen the files
+            if (index instanceof PagedBpTreeMap pm) pm.flush ();
+            DbfFile.write (DIR + name + EXT, new DbfFile.Header (name, attribute, domain, key,
+                           storeType ().name (), mType.name (), tuples.size ()), tuples);
+        } catch (UncheckedIOException ex) {
             out.println ("save: IO Exception");
             ex.printStackTrace ();
         } // try
     } // save
 
+    /************************************************************************************
+     * Pack tuple tup into a fixed-length record (byte array) laid out by the domains.
+     *
+     * @param tup  the tuple to pack
+     * @return  the packed record
+     */
+    public byte [] pack (Comparable [] tup)
+    {
+        return codec ().pack (tup);
+    } // pack
+
+    /************************************************************************************
+     * Unpack a fixed-length record (byte array) back into a tuple.
+     *
+     * @param record  the packed record
+     * @return  the unpacked tuple
+     */
+    public Comparable [] unpack (byte [] record)
+    {
+        return codec ().unpack (record);
+    } // unpack
+
     //----------------------------------------------------------------------------------
     // Private Methods
     //----------------------------------------------------------------------------------
@@ -532,7 +1617,7 @@ public class Table
      * @param column  the array of column names
      * @return  an array of column index positions
      */
-    private int [] match (String [] column)
+    int [] match (String [] column)
     {
         int [] colPos = new int [column.length];
 
@@ -550,6 +1635,86 @@ public class Table
         return colPos;
     } // match
 
+    /************************************************************************************
+     * Extract the values at the given column positions from tuple t.
+     *
+     * @param t       the tuple to extract from
+     * @param colPos  the column positions to extract
+     * @return  a smaller tuple extracted from tuple t 
+     */
+    static Comparable [] project (Comparable [] t, int [] colPos)
+    {
+        var tup = new Comparable [colPos.length];
+        for (var j = 0; j < colPos.length; j++) tup [j] = t [colPos [j]];
+        return tup;
+    } // project
+
+    /************************************************************************************
+     * Determine whether tuple t (at columns t_cols) and tuple u (at columns u_cols)
+     * agree on all the compared values.
+     *
+     * @param t       the first tuple
+     * @param t_cols  the column positions in t to compare
+     * @param u       the second tuple
+     * @param u_cols  the column positions in u to compare
+     * @return  whether the values are pairwise equal
+     */
+    private static boolean sameValues (Comparable [] t, int [] t_cols, Comparable [] u, int [] u_cols)
+    {
+        for (var j = 0; j < t_cols.length; j++) {
+            if (! t [t_cols [j]].equals (u [u_cols [j]])) return false;
+        } // for
+        return true;
+    } // sameValues
+
+    /************************************************************************************
+     * Compare tuple t (at columns t_cols) with tuple u (at columns u_cols) in the
+     * lexicographic order of the compared values.
+     *
+     * @param t       the first tuple
+     * @param t_cols  the column positions in t to compare
+     * @param u       the second tuple
+     * @param u_cols  the column positions in u to compare
+     * @return  resultant integer that's negative, zero or positive
+     */
+    @SuppressWarnings("unchecked")
+    static int compareOn (Comparable [] t, int [] t_cols, Comparable [] u, int [] u_cols)
+    {
+        for (var j = 0; j < t_cols.length; j++) {
+            var c = t [t_cols [j]].compareTo (u [u_cols [j]]);
+            if (c != 0) return c;
+        } // for
+        return 0;
+    } // compareOn
+
+    /************************************************************************************
+     * Return the positions of all the columns of this table (0 until arity).
+     */
+    private int [] allCols ()
+    {
+        var cols = new int [attribute.length];
+        for (var j = 0; j < cols.length; j++) cols [j] = j;
+        return cols;
+    } // allCols
+
+    /************************************************************************************
+     * Concatenate two arrays of attribute names, disambiguating any name in attr2 that
+     * already appears in attr1 by appending "2" to the end of it.
+     *
+     * @param attr1  the attribute names of the lhs table
+     * @param attr2  the attribute names of the rhs table
+     * @return  the attribute names for the joined table
+     */
+    static String [] disambiguate (String [] attr1, String [] attr2)
+    {
+        var names  = new HashSet <> (Arrays.asList (attr1));
+        var result = concat (attr1, attr2);
+        for (var j = attr1.length; j < result.length; j++) {
+            if (names.contains (result [j])) result [j] += "2";
+        } // for
+        return result;
+    } // disambiguate
+
     /************************************************************************************
      * Extract the attributes specified by the column array from tuple t.
      *
@@ -567,7 +1732,10 @@ public class Table
 
     /************************************************************************************
      * Check the size of the tuple (number of elements in array) as well as the type of
-     * each value to ensure it is from the right domain. 
+     * each value to ensure it is from the right domain.  COLUMN storage holds numbers
+     * and characters in primitive arrays, so they may not be null (see ColumnList).
+     * When the tuples are packed into records (FILE storage or a PAGED_BPTREE_MAP index),
+     * each value must also fit its fixed-width field (see RecordCodec).
      *
      * @param t  the tuple as a array of attribute values
      * @return  whether the tuple has the right size and values that comply
@@ -575,11 +1743,358 @@ public class Table
      */
     private boolean typeCheck (Comparable [] t)
     { 
-        //  T O   B E   I M P L E M E N T E D 
+        if (t.length != domain.length) {
+            out.println (STR."typeCheck: \{name} expects \{domain.length} values, not \{t.length}");
+            return false;
+        } // if
+        var cl = (tuples instanceof ColumnList c) ? c : null;
+        for (var j = 0; j < t.length; j++) {
+            if (! fits (t [j], domain [j])) {
+                out.println (STR."typeCheck: value \{t [j]} of \{attribute [j]} is not a \{domain [j].getSimpleName ()}");
+                return false;
+            } // if
+            if (cl != null && ! cl.fits (j, t [j])) {
+                out.println (STR."typeCheck: value of \{attribute [j]} may not be null in a COLUMN table");
+                return false;
+            } // if
+        } // for
+        if (packed ()) {
+            var rc = codec ();
+            for (var j = 0; j < t.length; j++) {
+                if (! rc.fits (j, t [j])) {
+                    out.println (STR."typeCheck: value \{t [j]} of \{attribute [j]} does not fit a \{rc.strLen ()}-byte record field");
+                    return false;
+                } // if
+            } // for
+        } // if
+        return true;
+    } // typeCheck
+
+    /************************************************************************************
+     * Type check a batch of tuples, checking the arity of each tuple and then the
+     * values one column (domain) at a time.  The failing tuples are reported.
+     *
+     * @param batch  the tuples to check
+     * @return  null if all the tuples pass, else whether each tuple passes
+     */
+    private boolean [] typeCheck (Collection <Comparable []> batch)
+    {
+        var ok  = new boolean [batch.size ()];
+        var bad = 0;
+        var i   = 0;
+        var cl  = (tuples instanceof ColumnList c) ? c : null;
+        for (var t : batch) if (! (ok [i++] = t.length == domain.length)) bad += 1;
+        for (var j = 0; j < domain.length; j++) {
+            var dom = domain [j];
+            i = 0;
+            for (var t : batch) {
+                if (ok [i] && (! fits (t [j], dom) || cl != null && ! cl.fits (j, t [j]))) { ok [i] = false; bad += 1; }
+                i += 1;
+            } // for
+        } // for
+        if (packed ()) {
+            var rc = codec ();
+            for (var j = 0; j < domain.length; j++) {
+                i = 0;
+                for (var t : batch) {
+                    if (ok [i] && ! rc.fits (j, t [j])) { ok [i] = false; bad += 1; }
+                    i += 1;
+                } // for
+            } // for
+        } // if
+        if (bad == 0) return null;
 
-        return true;      // change once implemented
+        out.println (STR."typeCheck: \{bad} tuples rejected for \{name}");
+        return ok;
     } // typeCheck
 
+    /************************************************************************************
+     * Return whether this table's tuples are packed into fixed-length records, either
+     * by its storage (FILE) or by its index (PAGED_BPTREE_MAP).
+     */
+    private boolean packed ()
+    {
+        return tuples instanceof FileList || index instanceof PagedBpTreeMap;
+    } // packed
+
+    /************************************************************************************
+     * Return the codec packing this table's tuples into records (made when first used).
+     */
+    private RecordCodec codec ()
+    {
+        if (codec == null) codec = new RecordCodec (domain);
+        return codec;
+    } // codec
+
+    /************************************************************************************
+     * Return whether value v may be stored in an attribute with domain dom.  Values are
+     * stored as given, so they must be instances of the domain (e.g., an Integer is not
+     * a Double, since the two cannot be compared by the indices).
+     *
+     * @param v    the value
+     * @param dom  the domain of the attribute
+     */
+    private static boolean fits (Comparable v, Class dom)
+    {
+        return v == null || dom.isInstance (v);
+    } // fits
+
+    /************************************************************************************
+     * Add the tuple about to be appended to the tuples list to the index (if any) and
+     * to the secondary indices.
+     *
+     * @param tup  the tuple
+     * @param pos  the position the tuple will have in the tuples list
+     */
+    private void indexTuple (Comparable [] tup, int pos)
+    {
+        var keyVal = new Comparable [key.length];
+        var cols   = match (key);
+        for (var j = 0; j < keyVal.length; j++) keyVal [j] = tup [cols [j]];
+        if (index instanceof LongKeyMap lk) {                           // primitive key => no KeyType needed
+            lk.putPos (KeyType.toLong (keyVal [0]), pos);
+        } else if (mType != MapType.NO_MAP) {
+            index.put (new KeyType (keyVal), tup);
+        } // if
+        for (var sec : secondary.values ()) sec.add (tup);
+    } // indexTuple
+
+    /************************************************************************************
+     * Return a table holding the tuples satisfying the predicate (in parallel for
+     * large tables).
+     *
+     * @param predicate  the check condition for tuples
+     */
+    private Table filter (Predicate <Comparable []> predicate)
+    {
+        if (parallel ()) {                                              // large => filter partitions in parallel
+            return new Table (name + count++, attribute, domain, key,
+                              inParallel ((t, rows) -> { if (predicate.test (t)) rows.add (t); }));
+        } // if
+
+        return new Table (name + count++, attribute, domain, key,
+                   tuples.stream ().filter (t -> predicate.test (t))
+                                   .collect (Collectors.toList ()));
+    } // filter
+
+    /************************************************************************************
+     * Return a columnar table holding the rows of cl satisfying the predicate on row
+     * positions, gathering the matching rows column by column.
+     *
+     * @param cl         the columns of this table
+     * @param predicate  the check condition for the i-th tuple
+     */
+    private Table filter (ColumnList cl, IntPredicate predicate)
+    {
+        var n    = cl.size ();
+        var keep = new boolean [n];
+        if (parallel ()) {
+            forPartitions (n, (lo, hi) -> { for (var i = lo; i < hi; i++) keep [i] = predicate.test (i); });
+        } else {
+            for (var i = 0; i < n; i++) keep [i] = predicate.test (i);
+        } // if
+        var pos = new int [n];
+        var m   = 0;
+        for (var i = 0; i < n; i++) if (keep [i]) pos [m++] = i;
+        return new Table (name + count++, attribute, domain, key, cl.gather (pos, m));
+    } // filter
+
+    /************************************************************************************
+     * Return whether operators should process this table's tuples in parallel, i.e.,
+     * the table is large and its tuples can be accessed by position.
+     */
+    private boolean parallel ()
+    {
+        return tuples.size () >= PAR_THRESHOLD && tuples instanceof RandomAccess;
+    } // parallel
+
+    /************************************************************************************
+     * Return the number of positions per partition when splitting n positions: big
+     * enough to amortize the task overhead, small enough to give each worker a few
+     * partitions so the load stays balanced.
+     *
+     * @param n  the number of positions
+     */
+    private static int grain (int n)
+    {
+        return Math.max (PARTITION, n / (4 * ForkJoinPool.getCommonPoolParallelism ()) + 1);
+    } // grain
+
+    /************************************************************************************
+     * Split the positions 0 until n into partitions and run body on each of them using
+     * the common fork-join pool.
+     *
+     * @param n     the number of positions
+     * @param body  the work to do on the positions lo until hi
+     */
+    private static void forPartitions (int n, RangeBody body)
+    {
+        var grain = grain (n);
+        ForkJoinPool.commonPool ().invoke (new Partitions (n, grain, 0, (n + grain - 1) / grain, body));
+    } // forPartitions
+
+    /************************************************************************************
+     * Apply op to every tuple of this table in parallel, each partition collecting its
+     * output in its own list, and concatenate the partition lists in order.
+     *
+     * @param op  the operation to apply, adding its output for a tuple to the given list
+     * @return  the concatenated output, in the order of the tuples
+     */
+    private List <Comparable []> inParallel (BiConsumer <Comparable [], List <Comparable []>> op)
+    {
+        return inParallel (op, false);
+    } // inParallel
+
+    /************************************************************************************
+     * Apply op to every tuple of this table in parallel, each partition collecting its
+     * output in its own list, and concatenate the partition lists in order.  When
+     * distinct, each partition removes its own duplicates and the concatenation drops
+     * those repeating an earlier partition's tuples.
+     *
+     * @param op        the operation to apply, adding its output for a tuple to the given list
+     * @param distinct  whether to remove duplicate tuples (keeping first occurrences)
+     * @return  the concatenated output, in the order of the tuples
+     */
+    @SuppressWarnings("unchecked")
+    private List <Comparable []> inParallel (BiConsumer <Comparable [], List <Comparable []>> op, boolean distinct)
+    {
+        var n     = tuples.size ();
+        var grain = grain (n);
+        var parts = (List <Comparable []> []) new List [(n + grain - 1) / grain];
+        forPartitions (n, (lo, hi) -> {
+            var rows = new ArrayList <Comparable []> (hi - lo);
+            for (var i = lo; i < hi; i++) op.accept (tuples.get (i), rows);
+            parts [lo / grain] = distinct ? distinct (rows) : rows;
+        });
+
+        var size = 0;
+        for (var p : parts) size += p.size ();
+        var result = new ArrayList <Comparable []> (size);
+        if (! distinct || parts.length == 1) {
+            for (var p : parts) result.addAll (p);
+            return result;
+        } // if
+
+        var seen = new HashSet <KeyType> (2 * size + 1);                // merge => drop repeats across partitions
+        for (var p : parts) {
+            for (var t : p) if (seen.add (new KeyType (t))) result.add (t);
+        } // for
+        return result;
+    } // inParallel
+
+    /************************************************************************************
+     * Return the tuples in rows without duplicates, keeping first occurrences (rows
+     * itself when it has none).
+     *
+     * @param rows  the tuples
+     */
+    private static List <Comparable []> distinct (List <Comparable []> rows)
+    {
+        var seen = new HashSet <KeyType> (2 * rows.size () + 1);
+        var keep = new ArrayList <Comparable []> (rows.size ());
+        for (var t : rows) if (seen.add (new KeyType (t))) keep.add (t);
+        return (keep.size () == rows.size ()) ? rows : keep;
+    } // distinct
+
+    /************************************************************************************
+     * Return the column list cl without duplicate tuples, keeping first occurrences
+     * (cl itself when it has none).
+     *
+     * @param cl  the column list
+     */
+    private static ColumnList distinct (ColumnList cl)
+    {
+        var n    = cl.size ();
+        var seen = new HashSet <KeyType> (2 * n + 1);
+        var pos  = new int [n];
+        var m    = 0;
+        for (var i = 0; i < n; i++) if (seen.add (new KeyType (cl.get (i)))) pos [m++] = i;
+        return (m == n) ? cl : cl.gather (pos, m);
+    } // distinct
+
+    /************************************************************************************
+     * A secondary index: maps the values of the attributes at cols to the list of
+     * tuples having them.
+     * @param cols  the column positions of the indexed attributes
+     * @param map   the index
+     */
+    private record Secondary (int [] cols, Map <KeyType, List <Comparable []>> map)
+            implements Serializable
+    {
+        /** Add tuple t to the index.
+         */
+        void add (Comparable [] t)
+        {
+            var k    = new KeyType (project (t, cols));
+            var tups = map.get (k);
+            if (tups == null) map.put (k, tups = new ArrayList <> (1));
+            tups.add (t);
+        } // add
+    } // Secondary
+
+    /************************************************************************************
+     * The work done on a partition of positions lo until hi.
+     */
+    @FunctionalInterface
+    private interface RangeBody
+    {
+        void run (int lo, int hi);
+    } // RangeBody
+
+    /************************************************************************************
+     * The fork-join task running a RangeBody on partitions first until last, splitting
+     * them in half until a single partition remains.
+     */
+    private static class Partitions
+            extends RecursiveAction
+    {
+        private final int n, grain, first, last;
+        private final RangeBody body;
+
+        Partitions (int _n, int _grain, int _first, int _last, RangeBody _body)
+        {
+            n = _n; grain = _grain; first = _first; last = _last; body = _body;
+        } // constructor
+
+        protected void compute ()
+        {
+            if (last - first <= 1) {
+                body.run (first * grain, Math.min (n, (first + 1) * grain));
+            } else {
+                var mid = (first + last) >>> 1;
+                invokeAll (new Partitions (n, grain, first, mid, body), new Partitions (n, grain, mid, last, body));
+            } // if
+        } // compute
+
+    } // Partitions
+
+    /************************************************************************************
+     * Return the storage layout used for this table's tuples.
+     */
+    private StoreType storeType ()
+    {
+        if (tuples instanceof ColumnList) return StoreType.COLUMN;
+        if (tuples instanceof FileList)   return StoreType.FILE;
+        return StoreType.ROW;
+    } // storeType
+
+    /************************************************************************************
+     * Make an empty list to hold the tuples of a table using the given storage layout.
+     *
+     * @param sType    the storage layout
+     * @param _name    the name of the relation (names the file for FILE)
+     * @param _domain  the attribute domains
+     * @return  an empty list of tuples
+     */
+    private static List <Comparable []> makeStore (StoreType sType, String _name, Class [] _domain)
+    {
+        return switch (sType) {
+        case ROW    -> new ArrayList <> ();
+        case COLUMN -> new ColumnList (_domain);
+        case FILE   -> new FileList (_name, _domain);
+        }; // switch
+    } // makeStore
+
     /************************************************************************************
      * Find the classes in the "java.lang" package with given names.
      *
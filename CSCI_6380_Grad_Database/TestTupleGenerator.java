@@ -5,6 +5,8 @@
  * @author   Sadiq Charaniya, John Miller
  */
 
+import java.util.Arrays;
+
 import static java.lang.System.out;
 
 /*****************************************************************************************
@@ -70,6 +72,10 @@ public class TestTupleGenerator
             } // for
             out.println ();
         } // for
+
+        var teaching = new Table ("Teaching", "crsCode semester profId", "String String Integer",
+                                  "crsCode semester", Table.MapType.BPTREE_MAP);
+        teaching.bulkInsert (Arrays.asList (resultTest [3]));
     } // main
 
 } // TestTupleGenerator
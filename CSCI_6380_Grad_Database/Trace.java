@@ -0,0 +1,154 @@
+
+/****************************************************************************************
+ * @file  Trace.java
+ *
+ * @author   John Miller
+ */
+
+import java.util.function.*;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * The Trace class is the logging hook for the database.  Statements (DDL, DML), relational
+ * algebra operators (RA) and plans (PLAN) report what they do as events sent to a sink,
+ * which by default prints them to standard output.  Events have levels:
+ *
+ *   WARN   the fallbacks taken when a request cannot be met as asked (e.g., a map type
+ *          that cannot index the key, or a join building a temporary index),
+ *   INFO   also the statements and operators as they are issued (other than
+ *          single-tuple inserts),
+ *   DEBUG  also each tuple inserted, and the number of rows produced by each operator
+ *          and the time it took,
+ *   TRACE  also the internals of the index structures (e.g., BpTreeMap, LinHashMap).
+ *
+ * The level is given by the system property "trace.level" (default INFO) and may be
+ * changed using setLevel.  When a level is off, checking it costs one volatile read and
+ * the message is never built, since callers pass it as a supplier.
+ *
+ * #usage Trace.setLevel (Trace.Level.DEBUG); Trace.setSink (e -> log.add (e))
+ */
+public class Trace
+{
+    /** The trace levels (each level includes the ones before it).
+     */
+    public enum Level { OFF, WARN, INFO, DEBUG, TRACE }
+
+    /************************************************************************************
+     * A trace event.
+     * @param level    the level of the event
+     * @param message  the message (e.g., "RA> movie.select (year == 1977)")
+     * @param rows     the number of rows produced (-1 when an operator starts)
+     * @param nanos    the elapsed time in nanoseconds (0 when an operator starts)
+     */
+    public record Event (Level level, String message, long rows, long nanos)
+    {
+        public String toString ()
+        {
+            if (rows < 0) return message;
+            return STR."\{message} => \{rows} rows in \{String.format ("%.3f", nanos / 1E6)} ms";
+        } // toString
+    } // Event
+
+    /** The current trace level
+     */
+    private static volatile Level level = Level.valueOf (System.getProperty ("trace.level", "INFO"));
+
+    /** The sink receiving the events
+     */
+    private static volatile Consumer <Event> sink = e -> out.println (e);
+
+    /************************************************************************************
+     * Set the trace level.
+     * @param _level  the new level (OFF turns tracing off)
+     */
+    public static void setLevel (Level _level) { level = _level; }
+
+    /************************************************************************************
+     * Set the sink that receives the events (it is called by the thread tracing).
+     * @param _sink  the new sink
+     */
+    public static void setSink (Consumer <Event> _sink) { sink = _sink; }
+
+    /************************************************************************************
+     * Return whether events at level l are being traced.
+     * @param l  the level to check
+     */
+    public static boolean on (Level l)
+    {
+        return l.ordinal () <= level.ordinal ();
+    } // on
+
+    /************************************************************************************
+     * Trace a message at level l.
+     * @param l        the level of the message
+     * @param message  supplies the message (only called when the level is on)
+     */
+    public static void log (Level l, Supplier <String> message)
+    {
+        if (on (l)) sink.accept (new Event (l, message.get (), -1, 0));
+    } // log
+
+    /************************************************************************************
+     * Trace a message at level INFO (e.g., a DDL statement or a bulk DML statement).
+     * @param message  supplies the message (only called when the level is on)
+     */
+    public static void info (Supplier <String> message)
+    {
+        log (Level.INFO, message);
+    } // info
+
+    /************************************************************************************
+     * Trace the start of an operator at level INFO, returning a span used to trace its
+     * end (with its row count and elapsed time) at level DEBUG.
+     * @param message  supplies the message (only called when the level is on)
+     * @return  the span for the operator (NONE when not timing)
+     */
+    public static Span begin (Supplier <String> message)
+    {
+        if (! on (Level.INFO)) return NONE;
+        var msg = message.get ();
+        sink.accept (new Event (Level.INFO, msg, -1, 0));
+        return on (Level.DEBUG) ? new Span (msg, System.nanoTime ()) : NONE;
+    } // begin
+
+    /** The span returned when operators are not being timed
+     */
+    private static final Span NONE = new Span (null, 0);
+
+    /************************************************************************************
+     * The Span class times an operator from begin to end.
+     */
+    public static class Span
+    {
+        private final String message;
+        private final long   start;
+
+        private Span (String _message, long _start)
+        {
+            message = _message;
+            start   = _start;
+        } // constructor
+
+        /********************************************************************************
+         * Trace the end of the operator given the number of rows it produced.
+         * @param rows  the number of rows
+         */
+        public void end (long rows)
+        {
+            if (this != NONE) sink.accept (new Event (Level.DEBUG, message, rows, System.nanoTime () - start));
+        } // end
+
+        /********************************************************************************
+         * Trace the end of the operator given its result, which is returned.
+         * @param result  the table produced by the operator (may be null)
+         */
+        public Table end (Table result)
+        {
+            if (this != NONE) end ((result == null) ? 0 : result.rows ());
+            return result;
+        } // end
+
+    } // Span
+
+} // Trace
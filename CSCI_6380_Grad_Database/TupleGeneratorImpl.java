@@ -1,4 +1,3 @@
-
 /*****************************************************************************************
  * @file  TupleGeneratorImpl
  *
@@ -7,25 +6,44 @@
 
 import static java.lang.System.out;
 import java.util.*;
+import java.util.stream.*;
 
 /*****************************************************************************************
  * This class is used to populate a database (collection of tables) with randomly
  * generated values that satisfy the following integrity constraints: domain, primary
  * keys and foreign key constraints.
+ *
+ * Each tuple is a function of the seed, its table and its position, so the tuples can
+ * be generated in any order, in parallel and without storing the tables: primary key
+ * values are unique by construction (the first key attribute that is not a foreign key
+ * takes a seeded permutation of the tuple's position), and a foreign key value is copied
+ * from a randomly chosen tuple of the referenced table, which is regenerated on demand.
+ * A key made up only of foreign keys is not forced to be unique.  Referenced tables must
+ * be added before the tables referencing them.
+ *
+ * #usage teaching.bulkInsert (gen.stream ("Teaching", new int [] { 10000, 1000, 2000, 50000, 5000 }))
  */
 public class TupleGeneratorImpl
        implements TupleGenerator
 {
+    /** The number of tuples generated together (in parallel) by stream
+     */
+    private static final int CHUNK = 1 << 16;
+
+    /** The number of values for random (non-key) integers and strings
+     */
+    private static final int RANGE = 1000000;
+
     /** Counter for table numbers
      */
     private int counter = 0;
 
-    /** Initializations 
+    /** Initializations
      */
-    private HashMap <String, Comparable [][]> result = new HashMap <> ();
-
     private HashMap <Integer, String> tableIndex = new HashMap <> ();
 
+    private HashMap <String, Integer> tableNumber = new HashMap <> ();
+
     private HashMap <String, String []> tableAttr = new HashMap <> ();
 
     private HashMap <String, String []> tableDomain = new HashMap <> ();
@@ -33,7 +51,29 @@ public class TupleGeneratorImpl
     private HashMap <String, String []> tablepks = new HashMap <> ();
 
     HashMap <String, String [][]> tablefks = new HashMap <> ();
-    
+
+    /** The seed for the random number generator (the same seed generates the same tuples)
+     */
+    private final long seed;
+
+    /*******************************************************************************************
+     * Construct a tuple generator producing different tuples on each run.
+     */
+    public TupleGeneratorImpl ()
+    {
+        this (new Random ().nextLong ());
+    } // constructor
+
+    /*******************************************************************************************
+     * Construct a tuple generator whose tuples are determined by the given seed, so that
+     * test data (e.g., for benchmarks) can be reproduced.
+     * @param _seed  the seed for the random number generator
+     */
+    public TupleGeneratorImpl (long _seed)
+    {
+        seed = _seed;
+    } // constructor
+
     /*******************************************************************************************
      * Adding relation to Schema.
      * @param name        the name of the table
@@ -46,13 +86,14 @@ public class TupleGeneratorImpl
                               String [] primaryKey, String [][] foreignKey)
     {
         tableIndex.put (counter, name);
+        tableNumber.put (name, counter);
         tableAttr.put (name, attribute);
         tableDomain.put (name, domain);
         tablepks.put (name, primaryKey);
         tablefks.put (name, foreignKey);
         counter++;
     } // addRelSchema
-    
+
     /*******************************************************************************************
      * Adding relation to Schema.  Convenience method.
      * @param name        the name of the table
@@ -69,196 +110,182 @@ public class TupleGeneratorImpl
     } // addRelSchema
 
     /***********************************************************************************
-     * Generates random tuples that satisfy all the integrity constraints.
+     * Generates random tuples that satisfy all the integrity constraints.  The tables,
+     * and the tuples within each table, are generated in parallel.
      * @param tuples  the number of tuples for each table
      * @return  tempResult contains tuples for all the tables in the order they were added
      */
     public Comparable [][][] generate (int [] tuples)
     {
-        var rand       = new Random ();
-        var tableName  = "";
-        var pKeys      = new HashSet <String> ();
-        var pKeyValues = new HashSet <Comparable <?>> ();
-        var fKeys      = new HashSet <String> ();
-        var fkIndex    = new ArrayList <String> ();
-
-        String []   attribute;
-        String []   domain;
-        String []   pks;
-        String [][] fks;
-        int         iVal;
-        String      sVal;
-        double      dVal;
-
-        for (var i = 0; i < tuples.length; i++) {
-            tableName = tableIndex.get (i);
-            attribute = tableAttr.get (tableName);
-            domain    = tableDomain.get (tableName);
-            pks       = tablepks.get (tableName);
-            fks       = tablefks.get (tableName);
-            var subResult = new Comparable [tuples [i]][attribute.length];
-
-            // out.println (tableName);
-            for (var n = 0; n < pks.length; n++) pKeys.add (pks [n]);
-
-            //----------------------------------------------------
-            // Handle the case where the table has no foreign keys
-
-            if (fks == null) {
-                for (var j = 0; j < tuples[i]; j++) {
-                    for (var k = 0; k < attribute.length; k++) {
-                        if (pKeys.contains (attribute[k])) {  // key requires uniqueness
+        var plan = plan (tuples);
+        return IntStream.range (0, tuples.length).parallel ()
+                        .mapToObj (i -> IntStream.range (0, tuples [i]).parallel ()
+                                                 .mapToObj (j -> row (plan, i, j))
+                                                 .toArray (Comparable [][]::new))
+                        .toArray (Comparable [][][]::new);
+    } // generate
 
-                            switch (domain[k]) {
-                            case "Integer":
-                                for (iVal = rand.nextInt (1000000); pKeyValues.contains (iVal);
-                                     iVal = rand.nextInt (1000000));
-                                subResult[j][k] = iVal;
-                                pKeyValues.add (iVal);
-                                break;
-                            case "String":
-                                for (sVal = attribute[k] + rand.nextInt (1000000); pKeyValues.contains(sVal);
-                                     sVal = attribute[k] + rand.nextInt (1000000));
-                                subResult[j][k] = sVal;
-                                pKeyValues.add (sVal);
-                                break;
-                            case "Double":
-                                for (dVal = rand.nextInt (1000000) * rand.nextDouble (); pKeyValues.contains( dVal);
-                                     dVal = rand.nextInt (1000000) * rand.nextDouble ());
-                                subResult[j][k] = dVal;
-                                pKeyValues.add (dVal);
-                                break;
-                            default:
-                                throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                            } // switch
+    /***********************************************************************************
+     * Generate the tuples of the named table as a stream, so that large tables can be
+     * loaded (e.g., using Table.bulkInsert) without being materialized.  The tuples are
+     * generated in parallel a CHUNK at a time and delivered in order.
+     * @param name    the name of the table
+     * @param tuples  the number of tuples for each table (as for generate)
+     * @return  the stream of the table's tuples
+     */
+    public Stream <Comparable []> stream (String name, int [] tuples)
+    {
+        var plan   = plan (tuples);
+        var i      = tableNumber.get (name);
+        var n      = tuples [i];
+        var chunks = (n + CHUNK - 1) / CHUNK;
+        return IntStream.range (0, chunks)
+                        .mapToObj (c -> IntStream.range (c * CHUNK, Math.min (n, (c + 1) * CHUNK)).parallel ()
+                                                 .mapToObj (j -> row (plan, i, j))
+                                                 .toArray (Comparable [][]::new))
+                        .flatMap (Arrays::stream);
+    } // stream
 
-                        } else {  // non-key does not require uniqueness
+    /***********************************************************************************
+     * How to generate the tuples of a table.
+     * @param count      the number of tuples in the table
+     * @param attribute  the attribute names
+     * @param type       the type of each attribute (INT, STRING or DOUBLE)
+     * @param isKey      whether each attribute takes the table's unique key values
+     * @param isFk       whether each attribute is set from a foreign key
+     * @param fks        for each foreign key: the referenced table, and pairs of attribute
+     *                   positions (in this table, in the referenced table)
+     * @param salt       the table's contribution to the seed
+     */
+    private record Plan (int count, String [] attribute, byte [] type, boolean [] isKey, boolean [] isFk,
+                         int [][] fks, long salt) {}
 
-                            switch (domain[k]) {
-                            case "Integer":
-                                subResult[j][k] = rand.nextInt(1000000); break;
-                            case "String":
-                                subResult[j][k] = attribute [k] + rand.nextInt (1000000); break;
-                            case "Double":
-                                subResult[j][k] = rand.nextInt (100000) * rand.nextDouble (); break;
-                            default:
-                                throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                            } // switch
+    /** Attribute types
+     */
+    private static final byte INT = 0, STRING = 1, DOUBLE = 2;
 
-                        } // if
-                    } // for
+    /***********************************************************************************
+     * Make the plans for generating all the tables with the given numbers of tuples,
+     * checking that every referenced table was added before the table referencing it.
+     * @param tuples  the number of tuples for each table
+     */
+    private Plan [] plan (int [] tuples)
+    {
+        var plan = new Plan [tuples.length];
+        for (var i = 0; i < tuples.length; i++) {
+            var tableName = tableIndex.get (i);
+            var attribute = tableAttr.get (tableName);
+            var domain    = tableDomain.get (tableName);
+            var pks       = Arrays.asList (tablepks.get (tableName));
+            var fks       = tablefks.get (tableName);
+
+            var type  = new byte [attribute.length];
+            var isKey = new boolean [attribute.length];
+            var isFk  = new boolean [attribute.length];
+            for (var k = 0; k < attribute.length; k++) {
+                type [k] = switch (domain [k]) {
+                case "Integer" -> INT;
+                case "String"  -> STRING;
+                case "Double"  -> DOUBLE;
+                default        -> throw new IllegalArgumentException ("Invalid type in switch: " + domain [k]);
+                }; // switch
+            } // for
+
+            var fkPlan = new int [(fks == null) ? 0 : fks.length][];
+            for (var n = 0; n < fkPlan.length; n++) {
+                var ref = tableNumber.get (fks [n][1]);
+                if (ref == null || ref >= i) {
+                    out.println ("Foreign Key Error: table containing referencing key cannot be populated before referenced table");
+                    out.println ("Possible Solution: Add '" + fks [n][1] + "' table before adding '" + tableName + "' table.");
+                    throw new IllegalArgumentException (STR."generate: \{tableName} references \{fks [n][1]}");
+                } // if
+                var sfks = fks [n][0].split (" ");
+                var rfks = fks [n][2].split (" ");
+                var refAttr = Arrays.asList (tableAttr.get (fks [n][1]));
+                fkPlan [n] = new int [1 + 2 * sfks.length];
+                fkPlan [n][0] = ref;
+                for (var a = 0; a < sfks.length; a++) {
+                    var b = Arrays.asList (attribute).indexOf (sfks [a]);
+                    fkPlan [n][1 + 2*a] = b;
+                    fkPlan [n][2 + 2*a] = refAttr.indexOf (rfks [a]);
+                    isFk [b] = true;
                 } // for
+            } // for
 
-            //-------------------------------------------------
-            // Handle the case where the table has foreign keys (maintain referential integrity)
-
-            } else {
-                for (var j = 0; j < tuples[i]; j++) {
-                    for (var n = 0; n < fks.length; n++) {
-
-                        if ( ! fks[n][0].contains (" ")) {
-                            fkIndex.add (n, fks[n][0]);
-                            var fkTable = result.get (fks[n][1]);
-                            int s;
-                            for (s = 0; s < attribute.length; s++) {
-                                if (attribute[s].equals (fks[n][0])) break;
-                            } // for
-                            String[] tempAtr = tableAttr.get(fks[n][1]);
-                            int x;
-                            for (x = 0; x < tempAtr.length; x++) {
-                                if (tempAtr[x].equals (fks[n][2])) break;
-                            } // for
-                            subResult[j][s] = fkTable[rand.nextInt (fkTable.length)][x];
-
-                        } else {
-                            String [] sfks = fks[n][0].split (" ");
-                            String [] rfks = fks[n][2].split (" ");
-                            for (var z = 0; z < fks[n][0].split (" ").length; z++) {
-                                fkIndex.add (n+z, fks[n][0].split (" ")[z]);
-                            } // for
-                            Comparable [][] fkTable = result.get (fks[n][1]);
-                            if (fkTable == null) {
-                                out.println ("Foreign Key Error: table containing referencing key cannot be populated before referenced table");
-                                out.println ("Possible Solution: Add '" + fks[n][1] + "' table before adding '" + tableName + "' table.");
-                                System.exit (0);
-                            } // if
-                            int t = rand.nextInt (fkTable.length);
-                            for (var a = 0; a < sfks.length; a++) {
-                                int b;
-                                for (b = 0; b < attribute.length; b++) {
-                                    if (attribute[b].equals (sfks[a])) break;
-                                } // for
-                                String [] tempAtr = tableAttr.get (fks[n][1]);
-                                int c;
-                                for (c = 0; c < tempAtr.length; c++) {
-                                    if (tempAtr[c].equals (rfks[a])) break;
-                                } // for
-                                subResult[j][b] = fkTable[t][c];
-                            } // for
-                        } // if
-                    } // for
-
-                    for (var k = 0; k < attribute.length; k++) {
-                        if ( ! fkIndex.contains (attribute[k])) {
-                            if (pKeys.contains (attribute[k])) {
-
-                                switch (domain[k]) {
-                                case "Integer":
-                                    for (iVal = rand.nextInt (1000000); pKeyValues.contains (iVal);
-                                         iVal = rand.nextInt (1000000));
-                                    subResult[j][k] = iVal;
-                                    pKeyValues.add (iVal);
-                                    break;
-                                case "String":
-                                    for (sVal = attribute[k] + rand.nextInt (1000000); pKeyValues.contains (sVal);
-                                         sVal = attribute[k] + rand.nextInt (1000000));
-                                    subResult[j][k] = sVal;
-                                    pKeyValues.add (sVal);
-                                    break;
-                                case "Double":
-                                    for (dVal = rand.nextInt (1000000) * rand.nextDouble (); pKeyValues.contains (dVal);
-                                         dVal = rand.nextInt (1000000) * rand.nextDouble ());
-                                    subResult[j][k] = dVal;
-                                    pKeyValues.add (dVal);
-                                    break;
-                                default:
-                                    throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                                } // if
-
-                            } else {
+            for (var k = 0; k < attribute.length; k++) {            // first key attribute not set by a foreign key
+                if (pks.contains (attribute [k]) && ! isFk [k]) { isKey [k] = true; break; }
+            } // for
+            plan [i] = new Plan (tuples [i], attribute, type, isKey, isFk, fkPlan, mix (seed + i));
+        } // for
+        return plan;
+    } // plan
 
-                                switch (domain[k]) {
-                                case "Integer":
-                                    subResult[j][k] = rand.nextInt (1000000); break;
-                                case "String":
-                                    subResult[j][k] = attribute [k] + rand.nextInt (1000000); break;
-                                case "Double":
-                                    subResult[j][k] = rand.nextInt (1000000) * rand.nextDouble (); break;
-                                default:
-                                    throw new IllegalArgumentException("Invalid type in switch: " + domain[k]);
-                                } // if
+    /***********************************************************************************
+     * Generate the j-th tuple of table i.
+     * @param plan  the plans for all the tables
+     * @param i     the table number
+     * @param j     the position of the tuple in the table
+     */
+    private Comparable [] row (Plan [] plan, int i, int j)
+    {
+        var p    = plan [i];
+        var rand = new SplittableRandom (mix (p.salt + j));
+        var tup  = new Comparable [p.type.length];
+
+        for (var fk : p.fks) {                                      // maintain referential integrity
+            var ref = plan [fk [0]];
+            if (ref.count == 0) throw new IllegalArgumentException ("generate: a referenced table is empty");
+            var u = row (plan, fk [0], rand.nextInt (ref.count));
+            for (var a = 1; a < fk.length; a += 2) tup [fk [a]] = u [fk [a+1]];
+        } // for
 
-                            } // if
-                        } // if
-                    } // for
-                } // for
+        for (var k = 0; k < tup.length; k++) {
+            if (p.isFk [k]) continue;
+            if (p.isKey [k]) {                                      // key requires uniqueness
+                var id = permute (j, p.salt);
+                tup [k] = switch (p.type [k]) {
+                case INT    -> id;
+                case STRING -> p.attribute [k] + id;
+                default     -> id + rand.nextDouble ();
+                }; // switch
+            } else {                                                // non-key does not require uniqueness
+                tup [k] = switch (p.type [k]) {
+                case INT    -> rand.nextInt (RANGE);
+                case STRING -> p.attribute [k] + rand.nextInt (RANGE);
+                default     -> rand.nextInt (RANGE) * rand.nextDouble ();
+                }; // switch
             } // if
-
-            pKeys.clear ();
-            fkIndex.clear ();
-            result.put (tableName, subResult);
         } // for
+        return tup;
+    } // row
 
-        var tempResult = new Comparable [result.size()][][];
-
-        for (var i = 0; i < result.size (); i++) {
-            tableName = tableIndex.get (i);
-            Comparable [][] subTable = result.get (tableName);
-            tempResult [i] = subTable;
+    /***********************************************************************************
+     * Map position j to a distinct non-negative int (a bijection on [0, 2^31) depending
+     * on the salt), so that key values are unique without being checked.
+     * @param j     the position
+     * @param salt  selects the permutation
+     */
+    private static int permute (int j, long salt)
+    {
+        final int MASK = 0x7FFFFFFF;
+        var x = j;
+        for (var r = 0; r < 3; r++) {
+            x  = (x * 0x2C1B3C6D) & MASK;                           // multiplying by an odd number
+            x ^= x >>> 15;                                          // an xorshift
+            x  = (x + (int) (salt >>> (16 * r))) & MASK;            // adding a constant (all mod 2^31)
         } // for
+        return x;
+    } // permute
 
-        return tempResult;
-    } // generate
+    /***********************************************************************************
+     * Mix the bits of a long (the finalizer of SplitMix64).
+     * @param z  the value to mix
+     */
+    private static long mix (long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    } // mix
 
 } // TestGeneratorImpl class
-
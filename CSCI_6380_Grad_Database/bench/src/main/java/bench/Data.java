@@ -0,0 +1,94 @@
+
+/****************************************************************************************
+ * @file  Data.java
+ *
+ * @author   John Miller
+ */
+
+package bench;
+
+import db.*;
+
+/****************************************************************************************
+ * The Data class generates the data sets for the benchmarks: the Student Registration
+ * Database of TestTupleGenerator, populated by TupleGeneratorImpl with a fixed seed so
+ * that every run benchmarks the same tuples.
+ */
+public class Data
+{
+    /** The seed for the tuple generator
+     */
+    public static final long SEED = 6380;
+
+    /** The tables in the order they are generated
+     */
+    public static final int STUDENT = 0, PROFESSOR = 1, COURSE = 2, TEACHING = 3, TRANSCRIPT = 4;
+
+    /** The schema of each table: name, attributes, domains, primary key
+     */
+    public static final String [][] SCHEMA = {
+        { "Student",    "id name address status",          "Integer String String String",  "id" },
+        { "Professor",  "id name deptId",                  "Integer String String",         "id" },
+        { "Course",     "crsCode deptId crsName descr",    "String String String String",   "crsCode" },
+        { "Teaching",   "crsCode semester profId",         "String String Integer",         "crsCode semester" },
+        { "Transcript", "studId crsCode semester grade",   "Integer String String String",  "studId crsCode semester" } };
+
+    /************************************************************************************
+     * Generate the tuples of the five tables, each with the given number of tuples
+     * (except Professor and Course, which get a tenth as many).
+     *
+     * @param size  the number of tuples in Student, Teaching and Transcript
+     * @param seed  the seed for the tuple generator
+     * @return  the tuples of each table
+     */
+    public static Comparable [][][] generate (int size, long seed)
+    {
+        var gen = new TupleGeneratorImpl (seed);
+        for (var s : SCHEMA) gen.addRelSchema (s[0], s[1], s[2], s[3], foreignKeys (s[0]));
+        var small = Math.max (1, size / 10);
+        return gen.generate (new int [] { size, small, small, size, size });
+    } // generate
+
+    /************************************************************************************
+     * Create an empty table for the given table number, indexed using the given type of
+     * map.
+     *
+     * @param t        the table number (e.g., STUDENT)
+     * @param mapType  the type of map for the index
+     */
+    public static Table table (int t, Table.MapType mapType)
+    {
+        var s = SCHEMA [t];
+        return new Table (s[0], s[1], s[2], s[3], mapType);
+    } // table
+
+    /************************************************************************************
+     * Create a table for the given table number holding the given tuples.
+     *
+     * @param t        the table number (e.g., STUDENT)
+     * @param mapType  the type of map for the index
+     * @param tuples   the tuples to load
+     */
+    public static Table table (int t, Table.MapType mapType, Comparable [][] tuples)
+    {
+        var tab = table (t, mapType);
+        tab.bulkInsert (java.util.Arrays.asList (tuples));
+        return tab;
+    } // table
+
+    /************************************************************************************
+     * Return the foreign keys of the named table.
+     */
+    private static String [][] foreignKeys (String name)
+    {
+        return switch (name) {
+        case "Teaching"   -> new String [][] {{ "profId", "Professor", "id" },
+                                              { "crsCode", "Course", "crsCode" }};
+        case "Transcript" -> new String [][] {{ "studId", "Student", "id" },
+                                              { "crsCode", "Course", "crsCode" },
+                                              { "crsCode semester", "Teaching", "crsCode semester" }};
+        default           -> null;
+        }; // switch
+    } // foreignKeys
+
+} // Data
@@ -0,0 +1,129 @@
+
+/****************************************************************************************
+ * @file  MapBench.java
+ *
+ * @author   John Miller
+ */
+
+package bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import db.*;
+
+/****************************************************************************************
+ * The MapBench class benchmarks get and put on the maps that may be used for indices,
+ * with the Student ids (as KeyTypes) generated by Data as the keys.  The get benchmarks
+ * cycle through the keys in a (seeded) random order.
+ *
+ * #usage java --enable-preview -jar target/benchmarks.jar MapBench -p size=100000
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 1, jvmArgsAppend = { "--enable-preview", "-Dtrace.level=OFF" })
+public class MapBench
+{
+    /** The number of keys in the map
+     */
+    @Param ({ "1000", "10000", "100000" })
+    public int size;
+
+    /** The type of map
+     */
+    @Param ({ "TREE_MAP", "HASH_MAP", "LINHASH_MAP", "BPTREE_MAP" })
+    public Table.MapType mapType;
+
+    private KeyType []      keys;                                   // keys in the map
+    private KeyType []      probes;                                 // keys in the map, in random order
+    private KeyType []      misses;                                 // keys not in the map
+    private Comparable [][] values;
+    private Map <KeyType, Comparable []> map;
+    private int next = 0;
+
+    /************************************************************************************
+     * Generate the keys and fill a map with them.
+     */
+    @Setup (Level.Trial)
+    public void setup ()
+    {
+        var tuples = Data.generate (size, Data.SEED) [Data.STUDENT];
+        var ids    = new HashSet <Integer> ();
+        keys   = new KeyType [size];
+        values = tuples;
+        for (var i = 0; i < size; i++) {
+            ids.add ((Integer) tuples [i][0]);
+            keys [i] = new KeyType (tuples [i][0]);
+        } // for
+
+        misses = new KeyType [size];
+        var rand = new Random (Data.SEED);
+        for (var i = 0; i < size; i++) {
+            int id; do id = rand.nextInt (); while (ids.contains (id));
+            misses [i] = new KeyType (id);
+        } // for
+
+        map    = fill ();
+        probes = keys.clone ();
+        Collections.shuffle (Arrays.asList (probes), rand);
+    } // setup
+
+    /************************************************************************************
+     * Make an empty map of the benchmarked type.
+     */
+    private Map <KeyType, Comparable []> makeMap ()
+    {
+        return switch (mapType) {
+        case TREE_MAP    -> new TreeMap <> ();
+        case HASH_MAP    -> new HashMap <> ();
+        case LINHASH_MAP -> new LinHashMap <> (KeyType.class, Comparable [].class);
+        case BPTREE_MAP  -> new BpTreeMap <> (KeyType.class, Comparable [].class);
+        default          -> throw new IllegalArgumentException (STR."MapBench: unsupported map type \{mapType}");
+        }; // switch
+    } // makeMap
+
+    /************************************************************************************
+     * Make a map holding all the keys (put in generation order).
+     */
+    private Map <KeyType, Comparable []> fill ()
+    {
+        var m = makeMap ();
+        for (var i = 0; i < size; i++) m.put (keys [i], values [i]);
+        return m;
+    } // fill
+
+    /************************************************************************************
+     * Put all the keys into an empty map (one operation puts size keys).
+     */
+    @Benchmark
+    public Map <KeyType, Comparable []> putAll ()
+    {
+        return fill ();
+    } // putAll
+
+    /************************************************************************************
+     * Get the value of a key in the map.
+     */
+    @Benchmark
+    public Comparable [] getHit ()
+    {
+        if (next == size) next = 0;
+        return map.get (probes [next++]);
+    } // getHit
+
+    /************************************************************************************
+     * Look up a key that is not in the map.
+     */
+    @Benchmark
+    public Comparable [] getMiss ()
+    {
+        if (next == size) next = 0;
+        return map.get (misses [next++]);
+    } // getMiss
+
+} // MapBench
@@ -0,0 +1,161 @@
+
+/****************************************************************************************
+ * @file  TableBench.java
+ *
+ * @author   John Miller
+ */
+
+package bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import db.*;
+
+/****************************************************************************************
+ * The TableBench class benchmarks the Table operators on the Student Registration
+ * Database for each type of map used for the primary index.  Tracing is turned off in
+ * the benchmark JVMs (-Dtrace.level=OFF) so the console does not dominate the timings.
+ *
+ * #usage java --enable-preview -jar target/benchmarks.jar TableBench -p mapType=HASH_MAP,BPTREE_MAP
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 3, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 1, jvmArgsAppend = { "--enable-preview", "-Dtrace.level=OFF" })
+public class TableBench
+{
+    /** The number of tuples in Student, Teaching and Transcript
+     */
+    @Param ({ "1000", "10000" })
+    public int size;
+
+    /** The type of map used for the primary indices
+     */
+    @Param ({ "NO_MAP", "TREE_MAP", "HASH_MAP", "LINHASH_MAP", "BPTREE_MAP", "LONG_MAP" })
+    public Table.MapType mapType;
+
+    private Comparable [][][] data;
+    private Table student, student2, teaching, transcript;
+
+    private int    median;                                          // median student id
+    private int    someId;                                          // id of an existing student
+    private String rangeCond, pointCond;
+
+    /************************************************************************************
+     * Generate the data and load the tables.  Student2 shares half its tuples with
+     * Student (for union and minus).
+     */
+    @Setup (Level.Trial)
+    public void setup ()
+    {
+        data       = Data.generate (size, Data.SEED);
+        student    = Data.table (Data.STUDENT, mapType, data [Data.STUDENT]);
+        teaching   = Data.table (Data.TEACHING, mapType, data [Data.TEACHING]);
+        transcript = Data.table (Data.TRANSCRIPT, mapType, data [Data.TRANSCRIPT]);
+
+        var other  = Data.generate (size, Data.SEED + 1) [Data.STUDENT];
+        var mixed  = new Comparable [size][];
+        for (var i = 0; i < size; i++) mixed [i] = (i % 2 == 0) ? data [Data.STUDENT][i] : other [i];
+        student2   = Data.table (Data.STUDENT, mapType, mixed);
+
+        var ids = new int [size];
+        for (var i = 0; i < size; i++) ids [i] = (Integer) data [Data.STUDENT][i][0];
+        someId    = ids [size / 3];
+        Arrays.sort (ids);
+        median    = ids [size / 2];
+        rangeCond = STR."id < \{ids [size / 100]}";                   // about 1% of the students
+        pointCond = STR."id == \{someId}";
+    } // setup
+
+    @Benchmark
+    public Table insert ()
+    {
+        var tab = Data.table (Data.STUDENT, mapType);
+        for (var t : data [Data.STUDENT]) tab.insert (t);
+        return tab;
+    } // insert
+
+    @Benchmark
+    public Table bulkInsert ()
+    {
+        return Data.table (Data.STUDENT, mapType, data [Data.STUDENT]);
+    } // bulkInsert
+
+    @Benchmark
+    public Table selectPredicate ()
+    {
+        return student.select (t -> (Integer) t[0] < median);
+    } // selectPredicate
+
+    @Benchmark
+    public Table selectPoint ()
+    {
+        return student.select (pointCond);
+    } // selectPoint
+
+    @Benchmark
+    public Table selectRange ()
+    {
+        return student.select (rangeCond);
+    } // selectRange
+
+    @Benchmark
+    public Table selectKey ()
+    {
+        return student.select (new KeyType (someId));
+    } // selectKey
+
+    @Benchmark
+    public Table project ()
+    {
+        return student.project ("name address");
+    } // project
+
+    @Benchmark
+    public Table union ()
+    {
+        return student.union (student2);
+    } // union
+
+    @Benchmark
+    public Table minus ()
+    {
+        return student.minus (student2);
+    } // minus
+
+    @Benchmark
+    public Table nestedLoopJoin ()
+    {
+        return transcript.join ("studId", "id", student);
+    } // nestedLoopJoin
+
+    @Benchmark
+    public Table indexedJoin ()
+    {
+        return transcript.i_join ("studId", "id", student);
+    } // indexedJoin
+
+    @Benchmark
+    public Table hashJoin ()
+    {
+        return transcript.h_join ("studId", "id", student);
+    } // hashJoin
+
+    @Benchmark
+    public Table sortMergeJoin ()
+    {
+        return transcript.sm_join ("studId", "id", student);
+    } // sortMergeJoin
+
+    @Benchmark
+    public Table naturalJoin ()
+    {
+        return transcript.join (teaching);
+    } // naturalJoin
+
+} // TableBench